@@ -4,11 +4,13 @@ import android.content.Context;
 
 import com.stallion.events.StallionEventConstants;
 import com.stallion.events.StallionEventManager;
+import com.stallion.networkmanager.StallionSyncHandler;
 import com.stallion.storage.StallionConfigConstants;
 import com.stallion.storage.StallionStateManager;
 import com.stallion.storage.StallionMeta;
 import com.stallion.storage.StallionMetaConstants;
 import com.stallion.utils.StallionFileManager;
+import com.stallion.utils.StallionIntegrityIndex;
 import com.stallion.utils.StallionSlotManager;
 
 import org.json.JSONObject;
@@ -18,12 +20,29 @@ import java.io.File;
 public class Stallion {
 
   private static StallionStateManager stateManager;
+  private static String lastDefaultBundlePath;
 
   public static String getJSBundleFile(Context applicationContext) {
     return getJSBundleFile(applicationContext, null);
   }
 
   public static String getJSBundleFile(Context applicationContext, String defaultBundlePath) {
+    lastDefaultBundlePath = defaultBundlePath;
+    String bundlePath = resolveJSBundleFile(applicationContext, defaultBundlePath);
+
+    // Started after the slots are mounted so the sync sees the bundle that is about to load
+    if (stateManager.getStallionConfig().isEarlySyncEnabled()) {
+      StallionSyncHandler.startEarlySync();
+    }
+    return bundlePath;
+  }
+
+  // Re-resolves the bundle for an in-process reload, mounting a release installed since launch
+  public static String getJSBundleFileForReload(Context applicationContext) {
+    return resolveJSBundleFile(applicationContext, lastDefaultBundlePath);
+  }
+
+  private static String resolveJSBundleFile(Context applicationContext, String defaultBundlePath) {
     StallionStateManager.init(applicationContext);
     stateManager = StallionStateManager.getInstance();
 
@@ -35,12 +54,15 @@ public class Stallion {
     StallionMeta stallionMeta = stateManager.stallionMeta;
     StallionMetaConstants.SwitchState switchState = stallionMeta.getSwitchState();
 
+    String bundlePath;
     if (switchState == StallionMetaConstants.SwitchState.PROD) {
-      return getProdBundlePath(baseFolderPath, defaultBundlePath);
+      bundlePath = getProdBundlePath(baseFolderPath, defaultBundlePath);
     } else if (switchState == StallionMetaConstants.SwitchState.STAGE) {
-      return getStageBundlePath(baseFolderPath, defaultBundlePath);
+      bundlePath = getStageBundlePath(baseFolderPath, defaultBundlePath);
+    } else {
+      bundlePath = getDefaultBundle(defaultBundlePath);
     }
-    return getDefaultBundle(defaultBundlePath);
+    return bundlePath;
   }
 
   private static void validateAppVersion(String currentAppVersion) {
@@ -60,6 +82,11 @@ public class Stallion {
     StallionMeta stallionMeta = stateManager.stallionMeta;
     String prodTempHash = stallionMeta.getProdTempHash();
     if(prodTempHash != null && !prodTempHash.isEmpty()) {
+      // Promoted here rather than at install, nothing runs from the new slot yet so it can be renamed instead of copied
+      String prodNewHash = stallionMeta.getProdNewHash();
+      if (prodNewHash != null && !prodNewHash.isEmpty()) {
+        StallionSlotManager.stabilizeProd();
+      }
       try {
         StallionFileManager.moveFile(
           new File(baseFolderPath, StallionConfigConstants.PROD_DIRECTORY + StallionConfigConstants.TEMP_FOLDER_SLOT),
@@ -67,6 +94,7 @@ public class Stallion {
         );
         stallionMeta.setProdNewHash(prodTempHash);
         stallionMeta.setProdTempHash("");
+        stallionMeta.setCurrentProdSlot(StallionMetaConstants.SlotStates.NEW_SLOT);
         stateManager.syncStallionMeta();
         sendInstallEvent(prodTempHash);
       } catch (Exception e) {
@@ -181,11 +209,11 @@ public class Stallion {
 
   private static String resolveBundlePath(String folderPath, String defaultBundlePath, String releaseHash, Boolean isProd) {
     String bundlePath = folderPath + StallionConfigConstants.UNZIP_FOLDER_NAME + StallionConfigConstants.ANDROID_BUNDLE_FILE_NAME;
-    if (new File(bundlePath).exists()) {
+    if (StallionIntegrityIndex.isBundleIntact(folderPath)) {
       return bundlePath;
     } else {
       if(isProd) {
-        StallionSlotManager.rollbackProd(false, "Corruped file not found" + folderPath);
+        StallionSlotManager.rollbackProd(false, "Corrupted or missing bundle in " + folderPath);
         sendCorruptionEvent(releaseHash, folderPath);
       } else {
         StallionSlotManager.rollbackStage();
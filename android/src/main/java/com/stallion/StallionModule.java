@@ -11,13 +11,20 @@ import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.module.annotations.ReactModule;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.stallion.events.StallionEventManager;
+import com.stallion.networkmanager.StallionBandwidthLimiter;
 import com.stallion.networkmanager.StallionStageManager;
 import com.stallion.networkmanager.StallionSyncHandler;
 import com.stallion.storage.StallionConfigConstants;
+import com.stallion.storage.StallionDiskQuotaManager;
 
 import com.stallion.storage.StallionMetaConstants;
 import com.stallion.storage.StallionStateManager;
 import com.stallion.utils.ProcessPhoenix;
+import com.stallion.utils.StallionApplyScheduler;
+import com.stallion.utils.StallionBundlePrewarmer;
+import com.stallion.utils.StallionIntegrityIndex;
+import com.stallion.utils.StallionIoThrottle;
+import com.stallion.utils.StallionReloader;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -35,16 +42,27 @@ public class StallionModule extends ReactContextBaseJavaModule implements Lifecy
     StallionStateManager.init(reactContext);
     this.stallionStateManager = StallionStateManager.getInstance();
     StallionEventManager.init(this.stallionStateManager);
+    StallionApplyScheduler.attach(reactContext);
     reactContext.addLifecycleEventListener(this);
   }
 
   @Override
   public void onHostResume() {
+    stallionStateManager.setIsInForeground(true);
+    StallionBandwidthLimiter.onLifecycleChanged();
+    StallionApplyScheduler.onForeground();
     StallionSyncHandler.sync();
   }
 
   @Override
-  public void onHostPause() {}
+  public void onHostPause() {
+    stallionStateManager.setIsInForeground(false);
+    StallionBandwidthLimiter.onLifecycleChanged();
+    StallionApplyScheduler.onBackground();
+    StallionEventManager.getInstance().flushEvents();
+    StallionBundlePrewarmer.prewarmNextLaunchBundle();
+    StallionIntegrityIndex.scrubNextLaunchSlot();
+  }
 
   @Override
   public void onHostDestroy() {
@@ -66,15 +84,13 @@ public class StallionModule extends ReactContextBaseJavaModule implements Lifecy
     );
     StallionEventManager.getInstance().setEmitter(eventEmitter);
     checkPendingDownloads();
+    StallionIntegrityIndex.scrubNextLaunchSlot();
+    StallionDiskQuotaManager.enforceInBackground();
   }
 
+  // Picks up releases queued before mount and downloads interrupted by a previous process
   private void checkPendingDownloads() {
-    String pendingReleaseUrl = stallionStateManager.getPendingReleaseUrl();
-    String pendingReleaseHash = stallionStateManager.getPendingReleaseHash();
-    if(!pendingReleaseUrl.isEmpty() && !pendingReleaseHash.isEmpty()) {
-      StallionSyncHandler.downloadNewRelease(pendingReleaseHash, pendingReleaseUrl, 0); // No bundle size available for pending downloads
-      stallionStateManager.setPendingRelease("", "");
-    }
+    StallionSyncHandler.resumeDownloads(true);
   }
 
   @ReactMethod
@@ -97,6 +113,15 @@ public class StallionModule extends ReactContextBaseJavaModule implements Lifecy
     }
   }
 
+  @ReactMethod
+  public void getDiskUsage(Promise promise) {
+    try {
+      promise.resolve(StallionDiskQuotaManager.getUsage().toString());
+    } catch (Exception e) {
+      promise.reject("getDiskUsage error:", e.toString());
+    }
+  }
+
   @ReactMethod
   public void toggleStallionSwitch(String switchState, Promise promise) {
     try {
@@ -118,9 +143,10 @@ public class StallionModule extends ReactContextBaseJavaModule implements Lifecy
     }
   }
 
+  // Explicit syncs from JS skip the minimum sync interval
   @ReactMethod
   public  void  sync() {
-    StallionSyncHandler.sync();
+    StallionSyncHandler.sync(true);
   }
 
   @ReactMethod
@@ -163,8 +189,23 @@ public class StallionModule extends ReactContextBaseJavaModule implements Lifecy
     }
   }
 
+  // Holds back install I/O, e.g. during an animation, until resumeInstall or at most StallionIoThrottle.MAX_PAUSE_MS
+  @ReactMethod
+  public void pauseInstall(double durationMs) {
+    StallionIoThrottle.pause((long) durationMs);
+  }
+
+  @ReactMethod
+  public void resumeInstall() {
+    StallionIoThrottle.resume();
+  }
+
   @ReactMethod
   public void restart() {
-    ProcessPhoenix.triggerRebirth(getReactApplicationContext());
+    if (stallionStateManager.getStallionConfig().isInProcessReloadEnabled()) {
+      StallionReloader.restart(getReactApplicationContext());
+    } else {
+      ProcessPhoenix.triggerRebirth(getReactApplicationContext());
+    }
   }
 }
@@ -0,0 +1,148 @@
+package com.stallion.events;
+
+import com.stallion.events.StallionEventConstants.NativeProdEventTypes;
+import com.stallion.events.StallionEventConstants.NativeStageEventTypes;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges repeated identical events into a single stored record.
+ * <p>
+ * Events of the repetitive types are held for a short window keyed by type, release hash and a
+ * hash of their meta. Identical events arriving in that window only bump a counter, and the held
+ * record is stored once with count, firstTimestamp and lastTimestamp when the window closes or
+ * the events are flushed.
+ */
+public class StallionEventCoalescer {
+  private static final long COALESCE_WINDOW_MS = 60 * 1000;
+  private static final int MAX_OPEN_WINDOWS = 32;
+
+  private static final Set<String> COALESCED_EVENT_TYPES = new HashSet<>();
+  static {
+    COALESCED_EVENT_TYPES.add(NativeProdEventTypes.SYNC_ERROR_PROD.name());
+    COALESCED_EVENT_TYPES.add(NativeProdEventTypes.DOWNLOAD_RESUME_PROD.name());
+    COALESCED_EVENT_TYPES.add(NativeProdEventTypes.DOWNLOAD_ERROR_PROD.name());
+    COALESCED_EVENT_TYPES.add(NativeProdEventTypes.EXCEPTION_PROD.name());
+    COALESCED_EVENT_TYPES.add(NativeStageEventTypes.DOWNLOAD_RESUME_STAGE.name());
+    COALESCED_EVENT_TYPES.add(NativeStageEventTypes.DOWNLOAD_ERROR_STAGE.name());
+    COALESCED_EVENT_TYPES.add(NativeStageEventTypes.EXCEPTION_STAGE.name());
+  }
+
+  public interface EventSink {
+    void store(String eventId, String eventType, JSONObject eventPayload);
+  }
+
+  private static final class Window {
+    final String eventId;
+    final String eventType;
+    final String meta;
+    final JSONObject eventPayload;
+    final long firstTimestamp;
+    long lastTimestamp;
+    int count = 1;
+
+    Window(String eventId, String eventType, String meta, JSONObject eventPayload, long timestamp) {
+      this.eventId = eventId;
+      this.eventType = eventType;
+      this.meta = meta;
+      this.eventPayload = eventPayload;
+      this.firstTimestamp = timestamp;
+      this.lastTimestamp = timestamp;
+    }
+  }
+
+  private final EventSink eventSink;
+  private final Map<String, Window> openWindows = new LinkedHashMap<>();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "StallionEventCoalescer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public StallionEventCoalescer(EventSink eventSink) {
+    this.eventSink = eventSink;
+  }
+
+  /**
+   * Returns true when the event was taken over by the coalescer and must not be stored by the caller.
+   */
+  public boolean offer(String eventId, String eventType, JSONObject eventPayload) {
+    if (!COALESCED_EVENT_TYPES.contains(eventType)) return false;
+
+    long now = System.currentTimeMillis();
+    String meta = eventPayload.optString("meta");
+    String key = eventType + '|' + eventPayload.optString("releaseHash") + '|' + meta.hashCode();
+    List<Window> closed = new ArrayList<>();
+    synchronized (this) {
+      Window window = openWindows.get(key);
+      if (window != null && window.meta.equals(meta) && now - window.firstTimestamp <= COALESCE_WINDOW_MS) {
+        window.count++;
+        window.lastTimestamp = now;
+        return true;
+      }
+      if (window != null) {
+        closed.add(openWindows.remove(key));
+      }
+      if (openWindows.size() >= MAX_OPEN_WINDOWS) {
+        Iterator<Window> eldest = openWindows.values().iterator();
+        closed.add(eldest.next());
+        eldest.remove();
+      }
+      openWindows.put(key, new Window(eventId, eventType, meta, eventPayload, now));
+    }
+    store(closed);
+    scheduler.schedule(this::flushExpired, COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
+    return true;
+  }
+
+  // Stores every held event immediately, used on pause and from the crash handler
+  public void flush() {
+    List<Window> closed;
+    synchronized (this) {
+      closed = new ArrayList<>(openWindows.values());
+      openWindows.clear();
+    }
+    store(closed);
+  }
+
+  private void flushExpired() {
+    long now = System.currentTimeMillis();
+    List<Window> closed = new ArrayList<>();
+    synchronized (this) {
+      Iterator<Window> iterator = openWindows.values().iterator();
+      while (iterator.hasNext()) {
+        Window window = iterator.next();
+        if (now - window.firstTimestamp >= COALESCE_WINDOW_MS) {
+          closed.add(window);
+          iterator.remove();
+        }
+      }
+    }
+    store(closed);
+  }
+
+  private void store(List<Window> windows) {
+    for (Window window : windows) {
+      if (window.count > 1) {
+        try {
+          window.eventPayload.put("count", window.count);
+          window.eventPayload.put("firstTimestamp", window.firstTimestamp);
+          window.eventPayload.put("lastTimestamp", window.lastTimestamp);
+        } catch (JSONException ignored) {}
+      }
+      eventSink.store(window.eventId, window.eventType, window.eventPayload);
+    }
+  }
+}
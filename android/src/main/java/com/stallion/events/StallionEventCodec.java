@@ -0,0 +1,291 @@
+package com.stallion.events;
+
+import com.stallion.events.StallionEventConstants.NativeProdEventTypes;
+import com.stallion.events.StallionEventConstants.NativeStageEventTypes;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compact binary encoding of stored events.
+ * <p>
+ * Fields that are constant for a session (projectId, platform, appVersion, uid) are written once
+ * in a header shared by many events, and dropped from an event when they match that header. The
+ * event type and well known keys are written as small varint codes, numbers as varints and hex
+ * strings such as release hashes as packed bytes. Nested objects and arrays are written
+ * recursively with plain string keys. The event id is kept by the event log and is
+ * not repeated in the payload. {@link #toJson} rebuilds the JSON view used by the JS bridge and
+ * the event upload API.
+ */
+public class StallionEventCodec {
+  private static final int FORMAT_VERSION = 1;
+
+  private static final String EVENT_ID_KEY = "eventId";
+  private static final String EVENT_TYPE_KEY = "eventType";
+  private static final String EVENT_TIMESTAMP_KEY = "eventTimestamp";
+  private static final String[] HEADER_KEYS = { "projectId", "platform", "appVersion", "uid" };
+  private static final List<String> KNOWN_KEYS = Arrays.asList(
+    "releaseHash",
+    "meta",
+    "isAutoRollback",
+    "count",
+    "firstTimestamp",
+    "lastTimestamp",
+    "progress"
+  );
+  private static final List<String> EVENT_TYPES = new ArrayList<>();
+  static {
+    for (NativeProdEventTypes type : NativeProdEventTypes.values()) EVENT_TYPES.add(type.name());
+    for (NativeStageEventTypes type : NativeStageEventTypes.values()) EVENT_TYPES.add(type.name());
+  }
+
+  private static final int TAG_STRING = 0;
+  private static final int TAG_LONG = 1;
+  private static final int TAG_TRUE = 2;
+  private static final int TAG_FALSE = 3;
+  private static final int TAG_DOUBLE = 4;
+  private static final int TAG_HEX = 5;
+  private static final int TAG_OBJECT = 6;
+  private static final int TAG_ARRAY = 7;
+
+  public static final class Header {
+    final String[] values;
+
+    Header(String[] values) {
+      this.values = values;
+    }
+
+    public String get(int index) {
+      return values[index];
+    }
+  }
+
+  public static byte[] encodeHeader(String projectId, String platform, String appVersion, String uid) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+    out.write(FORMAT_VERSION);
+    writeString(out, projectId);
+    writeString(out, platform);
+    writeString(out, appVersion);
+    writeString(out, uid);
+    return out.toByteArray();
+  }
+
+  // Returns null for headers written by an unknown format version
+  public static Header decodeHeader(byte[] bytes) {
+    if (bytes == null || bytes.length == 0 || bytes[0] != FORMAT_VERSION) return null;
+    int[] position = { 1 };
+    String[] values = new String[HEADER_KEYS.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = readString(bytes, position);
+    }
+    return new Header(values);
+  }
+
+  public static byte[] encode(JSONObject event, Header header) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+    String eventType = event.optString(EVENT_TYPE_KEY);
+    int typeCode = EVENT_TYPES.indexOf(eventType) + 1;
+    writeVarint(out, typeCode);
+    if (typeCode == 0) writeString(out, eventType);
+    writeVarint(out, event.optLong(EVENT_TIMESTAMP_KEY));
+
+    List<String> keys = new ArrayList<>();
+    Iterator<String> iterator = event.keys();
+    while (iterator.hasNext()) {
+      String key = iterator.next();
+      if (EVENT_ID_KEY.equals(key) || EVENT_TYPE_KEY.equals(key) || EVENT_TIMESTAMP_KEY.equals(key)) continue;
+      int headerIndex = headerIndexOf(key);
+      if (headerIndex >= 0 && header != null && header.values[headerIndex].equals(event.optString(key))) continue;
+      keys.add(key);
+    }
+    writeVarint(out, keys.size());
+    for (String key : keys) {
+      int keyCode = KNOWN_KEYS.indexOf(key) + 1;
+      writeVarint(out, keyCode);
+      if (keyCode == 0) writeString(out, key);
+      writeValue(out, event.opt(key));
+    }
+    return out.toByteArray();
+  }
+
+  public static String decodeEventType(byte[] payload) {
+    int[] position = { 0 };
+    int typeCode = (int) readVarint(payload, position);
+    return typeCode == 0 ? readString(payload, position) : EVENT_TYPES.get(typeCode - 1);
+  }
+
+  /**
+   * Rebuilds the JSON view of a stored event. Header fields are left out when includeHeader is
+   * false, for batches that carry them once at the top level.
+   */
+  public static JSONObject toJson(String eventId, byte[] payload, Header header, boolean includeHeader) throws JSONException {
+    JSONObject event = new JSONObject();
+    int[] position = { 0 };
+    int typeCode = (int) readVarint(payload, position);
+    event.put(EVENT_TYPE_KEY, typeCode == 0 ? readString(payload, position) : EVENT_TYPES.get(typeCode - 1));
+    event.put(EVENT_ID_KEY, eventId);
+    event.put(EVENT_TIMESTAMP_KEY, readVarint(payload, position));
+    if (includeHeader && header != null) {
+      for (int i = 0; i < HEADER_KEYS.length; i++) {
+        event.put(HEADER_KEYS[i], header.values[i]);
+      }
+    }
+    long fieldCount = readVarint(payload, position);
+    for (long i = 0; i < fieldCount; i++) {
+      int keyCode = (int) readVarint(payload, position);
+      String key = keyCode == 0 ? readString(payload, position) : KNOWN_KEYS.get(keyCode - 1);
+      event.put(key, readValue(payload, position));
+    }
+    return event;
+  }
+
+  public static void putHeader(JSONObject target, Header header) throws JSONException {
+    for (int i = 0; i < HEADER_KEYS.length; i++) {
+      target.put(HEADER_KEYS[i], header.values[i]);
+    }
+  }
+
+  private static int headerIndexOf(String key) {
+    for (int i = 0; i < HEADER_KEYS.length; i++) {
+      if (HEADER_KEYS[i].equals(key)) return i;
+    }
+    return -1;
+  }
+
+  private static void writeValue(ByteArrayOutputStream out, Object value) {
+    if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      out.write(TAG_OBJECT);
+      writeVarint(out, object.length());
+      Iterator<String> keys = object.keys();
+      while (keys.hasNext()) {
+        String key = keys.next();
+        writeString(out, key);
+        writeValue(out, object.opt(key));
+      }
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      out.write(TAG_ARRAY);
+      writeVarint(out, array.length());
+      for (int i = 0; i < array.length(); i++) {
+        writeValue(out, array.opt(i));
+      }
+    } else if (value instanceof Boolean) {
+      out.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+    } else if (value instanceof Integer || value instanceof Long) {
+      out.write(TAG_LONG);
+      long number = ((Number) value).longValue();
+      writeVarint(out, (number << 1) ^ (number >> 63));
+    } else if (value instanceof Number) {
+      out.write(TAG_DOUBLE);
+      long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+      for (int shift = 56; shift >= 0; shift -= 8) out.write((int) (bits >>> shift));
+    } else {
+      String string = value == null || value == JSONObject.NULL ? "" : value.toString();
+      if (isPackableHex(string)) {
+        out.write(TAG_HEX);
+        writeVarint(out, string.length() / 2);
+        for (int i = 0; i < string.length(); i += 2) {
+          out.write(Character.digit(string.charAt(i), 16) << 4 | Character.digit(string.charAt(i + 1), 16));
+        }
+      } else {
+        out.write(TAG_STRING);
+        writeString(out, string);
+      }
+    }
+  }
+
+  private static Object readValue(byte[] bytes, int[] position) throws JSONException {
+    int tag = bytes[position[0]++];
+    switch (tag) {
+      case TAG_OBJECT:
+        JSONObject object = new JSONObject();
+        long fieldCount = readVarint(bytes, position);
+        for (long i = 0; i < fieldCount; i++) {
+          String key = readString(bytes, position);
+          object.put(key, readValue(bytes, position));
+        }
+        return object;
+      case TAG_ARRAY:
+        JSONArray array = new JSONArray();
+        long elementCount = readVarint(bytes, position);
+        for (long i = 0; i < elementCount; i++) {
+          array.put(readValue(bytes, position));
+        }
+        return array;
+      case TAG_TRUE:
+        return true;
+      case TAG_FALSE:
+        return false;
+      case TAG_LONG:
+        long zigzag = readVarint(bytes, position);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      case TAG_DOUBLE:
+        long bits = 0;
+        for (int i = 0; i < 8; i++) bits = (bits << 8) | (bytes[position[0]++] & 0xff);
+        return Double.longBitsToDouble(bits);
+      case TAG_HEX:
+        int length = (int) readVarint(bytes, position);
+        char[] hex = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+          int value = bytes[position[0]++] & 0xff;
+          hex[i * 2] = Character.forDigit(value >> 4, 16);
+          hex[i * 2 + 1] = Character.forDigit(value & 0xf, 16);
+        }
+        return new String(hex);
+      default:
+        return readString(bytes, position);
+    }
+  }
+
+  // Only lowercase hex round-trips exactly through the packed form
+  private static boolean isPackableHex(String value) {
+    if (value.length() < 8 || value.length() % 2 != 0) return false;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) return false;
+    }
+    return true;
+  }
+
+  private static void writeString(ByteArrayOutputStream out, String value) {
+    byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static String readString(byte[] bytes, int[] position) {
+    int length = (int) readVarint(bytes, position);
+    String value = new String(bytes, position[0], length, StandardCharsets.UTF_8);
+    position[0] += length;
+    return value;
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long readVarint(byte[] bytes, int[] position) {
+    long result = 0;
+    int shift = 0;
+    byte current;
+    do {
+      current = bytes[position[0]++];
+      result |= (long) (current & 0x7F) << shift;
+      shift += 7;
+    } while ((current & 0x80) != 0);
+    return result;
+  }
+}
@@ -5,6 +5,7 @@ public class StallionEventConstants {
     DOWNLOAD_STARTED_PROD,
     DOWNLOAD_RESUME_PROD,
     DOWNLOAD_ERROR_PROD,
+    DOWNLOAD_PROGRESS_PROD,
     DOWNLOAD_COMPLETE_PROD,
     SYNC_ERROR_PROD,
     ROLLED_BACK_PROD,
@@ -13,7 +14,8 @@ public class StallionEventConstants {
     EXCEPTION_PROD,
     AUTO_ROLLED_BACK_PROD,
     CORRUPTED_FILE_ERROR,
-    FILE_MOUNTING_ERROR
+    FILE_MOUNTING_ERROR,
+    BYTECODE_INCOMPATIBLE_PROD
   }
 
   public enum NativeStageEventTypes {
@@ -24,5 +26,13 @@ public class StallionEventConstants {
     DOWNLOAD_RESUME_STAGE,
     DOWNLOAD_ERROR_STAGE,
     INSTALLED_STAGE,
+    BYTECODE_INCOMPATIBLE_STAGE,
+  }
+
+  // Declared lowest first, the ordinal is stored with each queued event
+  public enum EventPriority {
+    LOW,
+    NORMAL,
+    HIGH
   }
 }
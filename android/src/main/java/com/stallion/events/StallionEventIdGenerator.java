@@ -0,0 +1,20 @@
+package com.stallion.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates event ids without touching SecureRandom.
+ * <p>
+ * Ids are a per-process prefix, derived from the clocks at class load, followed by a monotonic
+ * counter. They only need to be unique for this device's event log and upload batches.
+ */
+public class StallionEventIdGenerator {
+  private static final String PROCESS_PREFIX = Long.toHexString(
+    System.currentTimeMillis() ^ (System.nanoTime() << 20)
+  ) + "-";
+  private static final AtomicLong counter = new AtomicLong();
+
+  public static String nextId() {
+    return PROCESS_PREFIX + Long.toHexString(counter.incrementAndGet());
+  }
+}
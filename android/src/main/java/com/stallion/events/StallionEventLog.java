@@ -0,0 +1,452 @@
+package com.stallion.events;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * File backed, append-only log of pending events.
+ * <p>
+ * Events are appended to fixed-size segment files. Acknowledged event ids are appended to a
+ * sidecar file next to their segment, and a segment is deleted as soon as every record in it
+ * has been acknowledged. Appending never reads or rewrites previously stored events.
+ * <p>
+ * Every segment starts with a header shared by all of its records. Segments are only appended
+ * to while their header matches the header the log was opened with.
+ */
+public class StallionEventLog {
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final String ACK_SUFFIX = ".ack";
+  private static final int MAX_HEADER_BYTES = 4 * 1024;
+  // Larger lengths can only come from a corrupted record, reading them would allocate the garbage
+  private static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+  private final File logDirectory;
+  private final long maxSegmentBytes;
+  private final byte[] segmentHeader;
+  private final TreeMap<Long, Segment> segments = new TreeMap<>();
+  // eventId -> segment id, for every record appended or read in this process
+  private final Map<String, Long> segmentIndex = new HashMap<>();
+
+  private Segment activeSegment;
+  private FileOutputStream activeWriter;
+  // Reused for every append so appends do not allocate an intermediate buffer
+  private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(4 * 1024);
+  private final DataOutputStream recordWriter = new DataOutputStream(recordBuffer);
+  private long nextSegmentId = 0;
+  private boolean isOpened = false;
+
+  public StallionEventLog(File logDirectory, long maxSegmentBytes, byte[] segmentHeader) {
+    this.logDirectory = logDirectory;
+    this.maxSegmentBytes = maxSegmentBytes;
+    this.segmentHeader = segmentHeader;
+  }
+
+  public static final class Cursor {
+    public static final Cursor HEAD = new Cursor(-1, 0);
+
+    final long segmentId;
+    final long offset;
+
+    Cursor(long segmentId, long offset) {
+      this.segmentId = segmentId;
+      this.offset = offset;
+    }
+  }
+
+  public static final class Record {
+    public final String eventId;
+    public final int priority;
+    public final byte[] payload;
+    public final byte[] segmentHeader;
+
+    Record(String eventId, int priority, byte[] payload, byte[] segmentHeader) {
+      this.eventId = eventId;
+      this.priority = priority;
+      this.payload = payload;
+      this.segmentHeader = segmentHeader;
+    }
+  }
+
+  public static final class Batch {
+    public final List<Record> records;
+    public final Cursor next;
+
+    Batch(List<Record> records, Cursor next) {
+      this.records = records;
+      this.next = next;
+    }
+  }
+
+  private static final class Segment {
+    final long id;
+    final File file;
+    final File ackFile;
+    final Set<String> acked = new HashSet<>();
+    byte[] header;
+    long dataStart;
+    long length;
+    int recordCount = -1;
+
+    Segment(long id, File directory) {
+      this.id = id;
+      this.file = new File(directory, id + SEGMENT_SUFFIX);
+      this.ackFile = new File(directory, id + ACK_SUFFIX);
+    }
+  }
+
+  public synchronized void append(String eventId, int priority, byte[] payload) throws IOException {
+    open();
+    if (activeSegment == null || activeSegment.length >= maxSegmentBytes) {
+      rollSegment();
+    }
+    writeRecord(eventId, priority, payload);
+  }
+
+  /**
+   * Appends to the segment that is already open, even past the segment size limit, so the crash
+   * path writes one record without creating files. Falls back to a regular append when no segment
+   * is open.
+   */
+  public synchronized void appendToOpenSegment(String eventId, int priority, byte[] payload) throws IOException {
+    if (activeSegment == null || activeWriter == null) {
+      append(eventId, priority, payload);
+      return;
+    }
+    writeRecord(eventId, priority, payload);
+  }
+
+  // Opens the log and makes sure a segment is ready for appends
+  public synchronized void openActiveSegment() throws IOException {
+    open();
+    if (activeSegment == null || activeSegment.length >= maxSegmentBytes) {
+      rollSegment();
+    }
+  }
+
+  /**
+   * Reads up to maxRecords unacknowledged records starting at the given cursor.
+   */
+  public synchronized Batch read(Cursor from, int maxRecords) throws IOException {
+    open();
+    List<Record> records = new ArrayList<>();
+    Cursor next = from;
+    for (Segment segment : new ArrayList<>(segments.tailMap(from.segmentId, true).values())) {
+      long offset = segment.id == from.segmentId ? Math.max(from.offset, segment.dataStart) : segment.dataStart;
+      try (DataInputStream in = openSegmentAt(segment, offset)) {
+        while (records.size() < maxRecords && offset < segment.length) {
+          Record record = readRecord(in, segment.header, segment.length - offset);
+          if (record == null) break;
+          offset += recordLength(record);
+          if (!segment.acked.contains(record.eventId)) {
+            segmentIndex.put(record.eventId, segment.id);
+            records.add(record);
+          }
+        }
+      } catch (IOException e) {
+        // A segment removed underneath the log is gone, any other read error may pass and is retried later
+        if (segment.file.exists()) throw e;
+        forgetSegment(segment);
+        continue;
+      }
+      if (records.size() < maxRecords && offset < segment.length) {
+        // Corrupted from here on, the records before it are kept and the rest is cut off
+        truncateSegment(segment, offset);
+        if (offset <= segment.dataStart && segment != activeSegment) {
+          deleteSegment(segment);
+          continue;
+        }
+      }
+      next = new Cursor(segment.id, offset);
+      if (records.size() >= maxRecords) break;
+    }
+    return new Batch(records, next);
+  }
+
+  public synchronized void acknowledge(Collection<String> eventIds) throws IOException {
+    open();
+    Map<Segment, StringBuilder> ackLines = new HashMap<>();
+    for (String eventId : eventIds) {
+      Long segmentId = segmentIndex.remove(eventId);
+      Segment segment = segmentId != null ? segments.get(segmentId) : null;
+      if (segment == null || !segment.acked.add(eventId)) continue;
+      StringBuilder lines = ackLines.get(segment);
+      if (lines == null) {
+        lines = new StringBuilder();
+        ackLines.put(segment, lines);
+      }
+      lines.append(eventId).append('\n');
+    }
+    for (Map.Entry<Segment, StringBuilder> entry : ackLines.entrySet()) {
+      Segment segment = entry.getKey();
+      if (segment.acked.size() >= recordCount(segment)) {
+        deleteSegment(segment);
+      } else {
+        try (FileOutputStream out = new FileOutputStream(segment.ackFile, true)) {
+          out.write(entry.getValue().toString().getBytes(StandardCharsets.UTF_8));
+        }
+      }
+    }
+  }
+
+  /**
+   * Acknowledges up to maxRecords of the oldest unacknowledged records, lowest priority first,
+   * never touching records above maxPriority. Returns the evicted records.
+   */
+  public synchronized List<Record> evict(int maxRecords, int maxPriority) throws IOException {
+    open();
+    List<Record> evicted = new ArrayList<>();
+    List<String> evictedIds = new ArrayList<>();
+    for (int priority = 0; priority <= maxPriority && evicted.size() < maxRecords; priority++) {
+      for (Segment segment : segments.values()) {
+        if (evicted.size() >= maxRecords) break;
+        try (DataInputStream in = openSegmentAt(segment, segment.dataStart)) {
+          long offset = segment.dataStart;
+          Record record;
+          while (evicted.size() < maxRecords && (record = readRecord(in, segment.header, segment.length - offset)) != null) {
+            offset += recordLength(record);
+            if (record.priority == priority && !segment.acked.contains(record.eventId)) {
+              segmentIndex.put(record.eventId, segment.id);
+              evictedIds.add(record.eventId);
+              evicted.add(record);
+            }
+          }
+        }
+      }
+    }
+    acknowledge(evictedIds);
+    return evicted;
+  }
+
+  public synchronized int size() throws IOException {
+    open();
+    int pending = 0;
+    for (Segment segment : segments.values()) {
+      pending += recordCount(segment) - segment.acked.size();
+    }
+    return pending;
+  }
+
+  public synchronized void clear() {
+    closeWriter();
+    for (Segment segment : new ArrayList<>(segments.values())) {
+      segment.file.delete();
+      segment.ackFile.delete();
+    }
+    segments.clear();
+    segmentIndex.clear();
+    activeSegment = null;
+  }
+
+  public synchronized void open() throws IOException {
+    if (isOpened) return;
+    if (!logDirectory.exists() && !logDirectory.mkdirs()) {
+      throw new IOException("Failed to create event log directory: " + logDirectory);
+    }
+    File[] files = logDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (!name.endsWith(SEGMENT_SUFFIX)) continue;
+        try {
+          long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+          Segment segment = new Segment(id, logDirectory);
+          segment.length = file.length();
+          if (!readHeader(segment)) {
+            file.delete();
+            segment.ackFile.delete();
+            continue;
+          }
+          loadAcks(segment);
+          segments.put(id, segment);
+        } catch (NumberFormatException ignored) {
+          file.delete();
+        }
+      }
+    }
+    if (!segments.isEmpty()) {
+      Segment lastSegment = segments.lastEntry().getValue();
+      repairTail(lastSegment);
+      // A changed header (e.g. after an app update) starts a new segment on the next append
+      if (Arrays.equals(lastSegment.header, segmentHeader)) {
+        activeSegment = lastSegment;
+        activeWriter = new FileOutputStream(activeSegment.file, true);
+      }
+    }
+    isOpened = true;
+  }
+
+  private void rollSegment() throws IOException {
+    closeWriter();
+    if (!segments.isEmpty()) {
+      nextSegmentId = Math.max(nextSegmentId, segments.lastKey() + 1);
+    }
+    Segment segment = new Segment(nextSegmentId++, logDirectory);
+    activeWriter = new FileOutputStream(segment.file, true);
+    DataOutputStream headerWriter = new DataOutputStream(activeWriter);
+    headerWriter.writeInt(segmentHeader.length);
+    headerWriter.write(segmentHeader);
+    headerWriter.flush();
+    segment.header = segmentHeader;
+    segment.dataStart = 4 + segmentHeader.length;
+    segment.length = segment.dataStart;
+    segment.recordCount = 0;
+    segments.put(segment.id, segment);
+    activeSegment = segment;
+  }
+
+  private boolean readHeader(Segment segment) {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(segment.file))) {
+      int headerLength = in.readInt();
+      if (headerLength < 0 || headerLength > MAX_HEADER_BYTES || 4 + headerLength > segment.length) return false;
+      segment.header = new byte[headerLength];
+      in.readFully(segment.header);
+      segment.dataStart = 4 + headerLength;
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private void deleteSegment(Segment segment) {
+    forgetSegment(segment);
+    segment.file.delete();
+    segment.ackFile.delete();
+  }
+
+  private void forgetSegment(Segment segment) {
+    if (segment == activeSegment) {
+      closeWriter();
+      activeSegment = null;
+    }
+    segments.remove(segment.id);
+  }
+
+  // The active writer appends, so it keeps writing at the new end of the file
+  private void truncateSegment(Segment segment, long validLength) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(segment.file, "rw")) {
+      raf.setLength(validLength);
+    }
+    segment.length = validLength;
+    segment.recordCount = -1;
+    recordCount(segment);
+  }
+
+  private void closeWriter() {
+    if (activeWriter != null) {
+      try {
+        activeWriter.close();
+      } catch (IOException ignored) {}
+      activeWriter = null;
+    }
+  }
+
+  private void loadAcks(Segment segment) {
+    if (!segment.ackFile.exists()) return;
+    try (BufferedReader reader = new BufferedReader(
+      new InputStreamReader(new FileInputStream(segment.ackFile), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) segment.acked.add(line);
+      }
+    } catch (IOException ignored) {}
+  }
+
+  // Counts records and truncates a partially written trailing record, if any
+  private void repairTail(Segment segment) throws IOException {
+    int count = 0;
+    long validLength = segment.dataStart;
+    try (DataInputStream in = openSegmentAt(segment, segment.dataStart)) {
+      Record record;
+      while ((record = readRecord(in, segment.header, segment.length - validLength)) != null) {
+        validLength += recordLength(record);
+        count++;
+      }
+    }
+    if (validLength < segment.length) {
+      truncateSegment(segment, validLength);
+    }
+    segment.recordCount = count;
+  }
+
+  private int recordCount(Segment segment) throws IOException {
+    if (segment.recordCount < 0) {
+      int count = 0;
+      long offset = segment.dataStart;
+      try (DataInputStream in = openSegmentAt(segment, segment.dataStart)) {
+        Record record;
+        while ((record = readRecord(in, segment.header, segment.length - offset)) != null) {
+          offset += recordLength(record);
+          count++;
+        }
+      }
+      segment.recordCount = count;
+    }
+    return segment.recordCount;
+  }
+
+  private DataInputStream openSegmentAt(Segment segment, long offset) throws IOException {
+    FileInputStream fis = new FileInputStream(segment.file);
+    fis.getChannel().position(offset);
+    return new DataInputStream(new BufferedInputStream(fis));
+  }
+
+  private void writeRecord(String eventId, int priority, byte[] payload) throws IOException {
+    if (payload.length > MAX_RECORD_BYTES) {
+      throw new IOException("Event too large: " + payload.length + " bytes");
+    }
+    encodeRecord(eventId, priority, payload);
+    recordBuffer.writeTo(activeWriter);
+    activeSegment.length += recordBuffer.size();
+    activeSegment.recordCount++;
+    segmentIndex.put(eventId, activeSegment.id);
+  }
+
+  private void encodeRecord(String eventId, int priority, byte[] payload) throws IOException {
+    recordBuffer.reset();
+    recordWriter.writeUTF(eventId);
+    recordWriter.writeByte(priority);
+    recordWriter.writeInt(payload.length);
+    recordWriter.write(payload);
+    recordWriter.flush();
+  }
+
+  // Returns null at the end of the segment, on a torn record or on a record that cannot be valid
+  private static Record readRecord(DataInputStream in, byte[] segmentHeader, long remaining) throws IOException {
+    try {
+      String eventId = in.readUTF();
+      int priority = in.readUnsignedByte();
+      int payloadLength = in.readInt();
+      if (payloadLength < 0 || payloadLength > MAX_RECORD_BYTES || payloadLength > remaining) return null;
+      byte[] payload = new byte[payloadLength];
+      in.readFully(payload);
+      return new Record(eventId, priority, payload, segmentHeader);
+    } catch (EOFException | UTFDataFormatException e) {
+      return null;
+    }
+  }
+
+  private static long recordLength(Record record) {
+    return 2 + record.eventId.getBytes(StandardCharsets.UTF_8).length + 1 + 4 + record.payload.length;
+  }
+}
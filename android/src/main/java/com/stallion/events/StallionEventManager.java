@@ -1,6 +1,8 @@
 package com.stallion.events;
 
+import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.stallion.networkmanager.StallionApiConstants;
 import com.stallion.storage.StallionConfig;
 import com.stallion.storage.StallionConfigConstants;
 import com.stallion.storage.StallionStateManager;
@@ -9,23 +11,92 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class StallionEventManager {
   public  static final String STALLION_NATIVE_EVENT_NAME = "STALLION_NATIVE_EVENT";
   private static final String EVENTS_KEY = "stored_events";
   private static final int MAX_BATCH_COUNT_SIZE = 9;
+  private static final long MAX_SEGMENT_BYTES = 64 * 1024;
 
   private static StallionEventManager instance;
   private final StallionStateManager stallionStateManager;
+  private final StallionEventLog eventLog;
+  private final StallionEventUploader eventUploader;
+  private final StallionEventQueuePolicy queuePolicy;
+  private final StallionEventCoalescer eventCoalescer;
+  private final StallionEventCodec.Header eventHeader;
   private final AtomicReference<DeviceEventManagerModule.RCTDeviceEventEmitter> eventEmitterRef = new AtomicReference<>();
 
+  // Events are handed off here and persisted by a single background writer
+  private final ConcurrentLinkedQueue<PendingEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+  // Held for every write to the event log, from the writer, the coalescer timer and the crash path
+  private final Object writeLock = new Object();
+  private final AtomicBoolean isDrainScheduled = new AtomicBoolean(false);
+  private final ExecutorService eventWriter = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "StallionEventWriter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static final class PendingEvent {
+    final String eventId;
+    final String eventName;
+    final JSONObject eventPayload;
+    final long eventTimestamp;
+
+    PendingEvent(String eventId, String eventName, JSONObject eventPayload, long eventTimestamp) {
+      this.eventId = eventId;
+      this.eventName = eventName;
+      this.eventPayload = eventPayload;
+      this.eventTimestamp = eventTimestamp;
+    }
+  }
+
   // Private constructor for Singleton
   private StallionEventManager(StallionStateManager stateManager) {
     this.stallionStateManager = stateManager;
+    StallionConfig stallionConfig = stateManager.getStallionConfig();
+    // Session constant fields are stored once per log segment instead of in every event
+    byte[] encodedHeader = StallionEventCodec.encodeHeader(
+      stallionConfig.getProjectId(),
+      StallionConfigConstants.PLATFORM,
+      stallionConfig.getAppVersion(),
+      stallionConfig.getUid()
+    );
+    this.eventHeader = StallionEventCodec.decodeHeader(encodedHeader);
+    this.eventLog = new StallionEventLog(
+      new File(stallionConfig.getFilesDirectory() + StallionConfigConstants.EVENTS_DIRECTORY),
+      MAX_SEGMENT_BYTES,
+      encodedHeader
+    );
+    this.queuePolicy = new StallionEventQueuePolicy(
+      stallionConfig.getMaxQueuedEvents(),
+      stallionConfig.getEventSamplingRates()
+    );
+    this.eventCoalescer = new StallionEventCoalescer(this::storeEventLocally);
+    // Keep file IO off the boot path, the log is opened early so the crash handler finds it ready
+    eventWriter.execute(this::prepareEventLog);
+
+    if (stallionConfig.isNativeEventUploadEnabled()) {
+      this.eventUploader = new StallionEventUploader(
+        eventLog,
+        StallionApiConstants.STALLION_API_BASE + StallionApiConstants.STALLION_LOG_EVENTS_API_PATH,
+        stallionConfig,
+        queuePolicy
+      );
+      this.eventUploader.start();
+    } else {
+      this.eventUploader = null;
+    }
   }
 
   // Singleton initialization method
@@ -65,101 +136,244 @@ public class StallionEventManager {
     }
   }
 
-  // Method to send an event
+  // Live only event with a native map payload, for frequent events such as download progress
+  public void sendEventWithoutCaching(String eventName, WritableMap eventPayload) {
+    eventPayload.putString("type", eventName);
+    DeviceEventManagerModule.RCTDeviceEventEmitter eventEmitter = eventEmitterRef.get();
+    if (eventEmitter != null && stallionStateManager.getIsMounted()) {
+      eventEmitter.emit(STALLION_NATIVE_EVENT_NAME, eventPayload);
+    }
+  }
+
+  // Method to send an event, the event is persisted on the background writer
   public void sendEvent(String eventName, JSONObject eventPayload) {
+    pendingEvents.offer(new PendingEvent(
+      StallionEventIdGenerator.nextId(),
+      eventName,
+      eventPayload,
+      System.currentTimeMillis()
+    ));
+    if (isDrainScheduled.compareAndSet(false, true)) {
+      eventWriter.execute(this::drainPendingEvents);
+    }
+  }
+
+  // Persists the event on the calling thread, for callers that cannot wait for the background
+  // writer such as the crash handler. The record is encoded before taking the write lock and
+  // appended to the segment opened at startup before anything else, then everything still queued
+  // is stored on a best effort basis.
+  public void sendEventSync(String eventName, JSONObject eventPayload) {
+    PendingEvent pendingEvent = new PendingEvent(
+      StallionEventIdGenerator.nextId(),
+      eventName,
+      eventPayload,
+      System.currentTimeMillis()
+    );
+    byte[] encodedEvent = null;
     try {
-      StallionConfig stallionConfig = this.stallionStateManager.getStallionConfig();
-      // Generate a unique ID for the event
-      String uniqueId = UUID.randomUUID().toString();
+      encodedEvent = StallionEventCodec.encode(prepareEvent(pendingEvent), eventHeader);
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    synchronized (writeLock) {
+      if (encodedEvent != null) {
+        try {
+          eventLog.appendToOpenSegment(pendingEvent.eventId, queuePolicy.priorityOf(eventName).ordinal(), encodedEvent);
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      }
+      try {
+        drainPendingEvents();
+        eventCoalescer.flush();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
 
-      eventPayload.put("type", eventName);
+  // Persists everything still queued or held for coalescing on the calling thread
+  public void persistPendingEventsSync() {
+    synchronized (writeLock) {
+      drainPendingEvents();
+      eventCoalescer.flush();
+    }
+  }
 
-      DeviceEventManagerModule.RCTDeviceEventEmitter eventEmitter = eventEmitterRef.get();
-      // Emit the event to React Native
-      if (eventEmitter != null && stallionStateManager.getIsMounted()) {
-        eventEmitter.emit(STALLION_NATIVE_EVENT_NAME, eventPayload.toString());
+  private void drainPendingEvents() {
+    synchronized (writeLock) {
+      isDrainScheduled.set(false);
+      PendingEvent pendingEvent;
+      while ((pendingEvent = pendingEvents.poll()) != null) {
+        processEvent(pendingEvent);
       }
+    }
+  }
 
-      // change type for sending to server
-      eventPayload.remove("type");
-      eventPayload.put("eventType", eventName);
+  private void processEvent(PendingEvent pendingEvent) {
+    try {
+      JSONObject eventPayload = prepareEvent(pendingEvent);
+      // Store the event locally, repeated identical events are merged first
+      if (!eventCoalescer.offer(pendingEvent.eventId, pendingEvent.eventName, eventPayload)) {
+        storeEventLocally(pendingEvent.eventId, pendingEvent.eventName, eventPayload);
+      }
+    } catch (JSONException e) {
+      e.printStackTrace();
+    }
+  }
 
-      // Add unique ID and timestamp to the event payload
-      eventPayload.put("eventId", uniqueId);
-      eventPayload.put("eventTimestamp", System.currentTimeMillis());
-      eventPayload.put("projectId", stallionConfig.getProjectId());
-      eventPayload.put("platform", StallionConfigConstants.PLATFORM);
-      eventPayload.put("appVersion", stallionConfig.getAppVersion());
-      eventPayload.put("uid", stallionConfig.getUid());
+  // Emits the event to React Native and adds the fields the server expects
+  private JSONObject prepareEvent(PendingEvent pendingEvent) throws JSONException {
+    StallionConfig stallionConfig = this.stallionStateManager.getStallionConfig();
+    String eventName = pendingEvent.eventName;
+    JSONObject eventPayload = pendingEvent.eventPayload;
 
-      // Store the event locally
-      storeEventLocally(uniqueId, eventPayload);
+    eventPayload.put("type", eventName);
 
-    } catch (JSONException e) {
-      e.printStackTrace();
+    DeviceEventManagerModule.RCTDeviceEventEmitter eventEmitter = eventEmitterRef.get();
+    // Emit the event to React Native
+    if (eventEmitter != null && stallionStateManager.getIsMounted()) {
+      eventEmitter.emit(STALLION_NATIVE_EVENT_NAME, eventPayload.toString());
+    }
+
+    // change type for sending to server
+    eventPayload.remove("type");
+    eventPayload.put("eventType", eventName);
+
+    // Add unique ID and timestamp to the event payload
+    eventPayload.put("eventId", pendingEvent.eventId);
+    eventPayload.put("eventTimestamp", pendingEvent.eventTimestamp);
+    eventPayload.put("projectId", stallionConfig.getProjectId());
+    eventPayload.put("platform", StallionConfigConstants.PLATFORM);
+    eventPayload.put("appVersion", stallionConfig.getAppVersion());
+    eventPayload.put("uid", stallionConfig.getUid());
+    return eventPayload;
+  }
+
+  // Append the event to the local event log, applying sampling and the queue limit
+  private void storeEventLocally(String uniqueId, String eventName, JSONObject eventPayload) {
+    synchronized (writeLock) {
+      storeEventLocallyLocked(uniqueId, eventName, eventPayload);
     }
   }
 
-  // Store the event locally in SharedPreferences
-  private void storeEventLocally(String uniqueId, JSONObject eventPayload) {
+  private void storeEventLocallyLocked(String uniqueId, String eventName, JSONObject eventPayload) {
     try {
-      String eventsString = stallionStateManager.getString(EVENTS_KEY, "{}");
-      JSONObject eventsObject = new JSONObject(eventsString);
-      eventsObject.put(uniqueId, eventPayload.toString());
-      stallionStateManager.setString(EVENTS_KEY, eventsObject.toString());
-    } catch (JSONException e) {
-      cleanupEventStorage();
+      if (!queuePolicy.shouldSample(eventName)) {
+        queuePolicy.recordDrop(eventName);
+        return;
+      }
+      int priority = queuePolicy.priorityOf(eventName).ordinal();
+      if (eventLog.size() >= queuePolicy.getMaxQueuedEvents() && !makeRoom(priority)) {
+        queuePolicy.recordDrop(eventName);
+        return;
+      }
+      eventLog.append(uniqueId, priority, StallionEventCodec.encode(eventPayload, eventHeader));
+      if (eventUploader != null) {
+        eventUploader.onEventStored();
+      }
+    } catch (Exception e) {
       e.printStackTrace();
     }
   }
 
-  private void cleanupEventStorage() {
-    stallionStateManager.setString(EVENTS_KEY, "{}");
+  // Evicts the oldest events that are not more important than the incoming one
+  private boolean makeRoom(int incomingPriority) throws Exception {
+    List<StallionEventLog.Record> evicted = eventLog.evict(queuePolicy.getEvictionBatchSize(), incomingPriority);
+    for (StallionEventLog.Record record : evicted) {
+      queuePolicy.recordDrop(StallionEventCodec.decodeEventType(record.payload));
+    }
+    return !evicted.isEmpty();
   }
 
-  // Method to pop events as a batch
-  public String popEvents() {
+  private void prepareEventLog() {
+    synchronized (writeLock) {
+      try {
+        eventLog.open();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+      migrateLegacyEvents();
+      try {
+        // The crash path appends to this segment and never has to create one
+        eventLog.openActiveSegment();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  // Moves events stored by older SDK versions in SharedPreferences into the event log
+  private void migrateLegacyEvents() {
+    String eventsString = stallionStateManager.getString(EVENTS_KEY, "");
+    if (eventsString.isEmpty()) return;
     try {
-      String eventsString = stallionStateManager.getString(EVENTS_KEY, "{}");
       JSONObject eventsObject = new JSONObject(eventsString);
-
-      JSONArray batch = new JSONArray();
       Iterator<String> keys = eventsObject.keys();
-
-      int count = 0;
-      while (keys.hasNext() && count < MAX_BATCH_COUNT_SIZE) {
+      while (keys.hasNext()) {
         String key = keys.next();
-        batch.put(new JSONObject(eventsObject.getString(key)));
-        count++;
+        JSONObject storedEvent = new JSONObject(eventsObject.getString(key));
+        String eventType = storedEvent.optString("eventType");
+        eventLog.append(key, queuePolicy.priorityOf(eventType).ordinal(), StallionEventCodec.encode(storedEvent, eventHeader));
       }
-
-      return batch.toString();
-
-    } catch (JSONException e) {
-      cleanupEventStorage();
+    } catch (Exception e) {
       e.printStackTrace();
     }
+    stallionStateManager.removeKey(EVENTS_KEY);
+  }
 
-    return "[]"; // Return an empty array if there are no events
+  // Stores queued events and events held for coalescing, then uploads them right away
+  // when the native uploader is enabled
+  public void flushEvents() {
+    eventWriter.execute(() -> {
+      persistPendingEventsSync();
+      if (eventUploader != null) {
+        eventUploader.flushNow();
+      }
+    });
   }
 
-  // Acknowledge events by deleting them from local storage
-  public void acknowledgeEvents(List<String> eventIds) {
+  // Returns the oldest stored events for JS to upload. Always "[]" when AirshipNativeEventUpload
+  // is enabled: the native uploader owns delivery then, and JS uploading too would send every
+  // event twice. The events stay in the log until the native uploader has delivered them.
+  public String popEvents() {
+    if (eventUploader != null) {
+      return "[]";
+    }
     try {
-      String eventsString = stallionStateManager.getString(EVENTS_KEY, "{}");
-      JSONObject eventsObject = new JSONObject(eventsString);
+      StallionEventLog.Batch batch = eventLog.read(StallionEventLog.Cursor.HEAD, MAX_BATCH_COUNT_SIZE);
 
-      // Remove each event by its unique ID
-      for (String eventId : eventIds) {
-        if (eventsObject.has(eventId)) {
-          eventsObject.remove(eventId);
+      // JS receives the full JSON view, header fields included
+      JSONArray batchJson = new JSONArray();
+      byte[] lastSegmentHeader = null;
+      StallionEventCodec.Header header = null;
+      for (StallionEventLog.Record record : batch.records) {
+        try {
+          if (record.segmentHeader != lastSegmentHeader) {
+            header = StallionEventCodec.decodeHeader(record.segmentHeader);
+            lastSegmentHeader = record.segmentHeader;
+          }
+          batchJson.put(StallionEventCodec.toJson(record.eventId, record.payload, header, true));
+        } catch (Exception e) {
+          // A record that cannot be decoded is skipped, the rest of the batch is still returned
+          e.printStackTrace();
         }
       }
+      return batchJson.toString();
 
-      // Update the SharedPreferences with the modified events
-      stallionStateManager.setString(EVENTS_KEY, eventsObject.toString());
+    } catch (Exception e) {
+      // Stored events are kept, the next call retries the read
+      e.printStackTrace();
+    }
 
-    } catch (JSONException e) {
+    return "[]"; // Return an empty array if there are no events
+  }
+
+  // Acknowledge events by deleting them from local storage
+  public void acknowledgeEvents(List<String> eventIds) {
+    try {
+      eventLog.acknowledge(new ArrayList<>(eventIds));
+    } catch (Exception e) {
       e.printStackTrace();
     }
   }
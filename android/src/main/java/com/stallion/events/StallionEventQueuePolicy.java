@@ -0,0 +1,128 @@
+package com.stallion.events;
+
+import com.stallion.events.StallionEventConstants.EventPriority;
+import com.stallion.events.StallionEventConstants.NativeProdEventTypes;
+import com.stallion.events.StallionEventConstants.NativeStageEventTypes;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides which events are queued once the local event log is under pressure.
+ * <p>
+ * High volume event types can be sampled, and once the queue holds maxQueuedEvents the oldest
+ * events of the lowest priority are evicted to make room. Every sampled out or evicted event is
+ * counted per type so the next uploaded batch can report what was lost.
+ */
+public class StallionEventQueuePolicy {
+  public static final int DEFAULT_MAX_QUEUED_EVENTS = 1000;
+  // Evict a tenth of the queue at once so a flood does not rescan the log for every event
+  private static final int EVICTION_DIVISOR = 10;
+
+  private final int maxQueuedEvents;
+  private final Map<String, Double> samplingRates;
+  private final Map<String, AtomicInteger> dropCounts = new ConcurrentHashMap<>();
+  private final Random random = new Random();
+
+  public StallionEventQueuePolicy(int maxQueuedEvents, String samplingRatesConfig) {
+    this.maxQueuedEvents = maxQueuedEvents > 0 ? maxQueuedEvents : DEFAULT_MAX_QUEUED_EVENTS;
+    this.samplingRates = parseSamplingRates(samplingRatesConfig);
+  }
+
+  public int getMaxQueuedEvents() {
+    return maxQueuedEvents;
+  }
+
+  public int getEvictionBatchSize() {
+    return Math.max(1, maxQueuedEvents / EVICTION_DIVISOR);
+  }
+
+  public boolean shouldSample(String eventType) {
+    Double rate = samplingRates.get(eventType);
+    return rate == null || rate >= 1 || random.nextDouble() < rate;
+  }
+
+  public EventPriority priorityOf(String eventType) {
+    if (
+      NativeProdEventTypes.INSTALLED_PROD.name().equals(eventType)
+        || NativeProdEventTypes.STABILIZED_PROD.name().equals(eventType)
+        || NativeProdEventTypes.ROLLED_BACK_PROD.name().equals(eventType)
+        || NativeProdEventTypes.AUTO_ROLLED_BACK_PROD.name().equals(eventType)
+        || NativeProdEventTypes.DOWNLOAD_COMPLETE_PROD.name().equals(eventType)
+        || NativeProdEventTypes.CORRUPTED_FILE_ERROR.name().equals(eventType)
+        || NativeProdEventTypes.FILE_MOUNTING_ERROR.name().equals(eventType)
+    ) {
+      return EventPriority.HIGH;
+    }
+    if (
+      NativeProdEventTypes.SYNC_ERROR_PROD.name().equals(eventType)
+        || NativeProdEventTypes.DOWNLOAD_RESUME_PROD.name().equals(eventType)
+        || NativeStageEventTypes.DOWNLOAD_RESUME_STAGE.name().equals(eventType)
+        || NativeStageEventTypes.DOWNLOAD_PROGRESS_STAGE.name().equals(eventType)
+    ) {
+      return EventPriority.LOW;
+    }
+    return EventPriority.NORMAL;
+  }
+
+  public void recordDrop(String eventType) {
+    AtomicInteger count = dropCounts.get(eventType);
+    if (count == null) {
+      AtomicInteger newCount = new AtomicInteger();
+      count = dropCounts.putIfAbsent(eventType, newCount);
+      if (count == null) count = newCount;
+    }
+    count.incrementAndGet();
+  }
+
+  // Returns the current drop counts, or null when nothing was dropped
+  public Map<String, Integer> snapshotDropCounts() {
+    Map<String, Integer> snapshot = new HashMap<>();
+    for (Map.Entry<String, AtomicInteger> entry : dropCounts.entrySet()) {
+      int count = entry.getValue().get();
+      if (count > 0) snapshot.put(entry.getKey(), count);
+    }
+    return snapshot.isEmpty() ? null : snapshot;
+  }
+
+  // Subtracts counts that were reported in a successfully uploaded batch
+  public void clearDropCounts(Map<String, Integer> reported) {
+    for (Map.Entry<String, Integer> entry : reported.entrySet()) {
+      AtomicInteger count = dropCounts.get(entry.getKey());
+      if (count != null) count.addAndGet(-entry.getValue());
+    }
+  }
+
+  public static String dropCountsToJson(Map<String, Integer> dropCounts) {
+    try {
+      JSONObject json = new JSONObject();
+      for (Map.Entry<String, Integer> entry : dropCounts.entrySet()) {
+        json.put(entry.getKey(), entry.getValue().intValue());
+      }
+      return json.toString();
+    } catch (JSONException e) {
+      return "{}";
+    }
+  }
+
+  // Format: "SYNC_ERROR_PROD:0.1,DOWNLOAD_RESUME_PROD:0.5"
+  private static Map<String, Double> parseSamplingRates(String samplingRatesConfig) {
+    Map<String, Double> rates = new HashMap<>();
+    if (samplingRatesConfig == null || samplingRatesConfig.isEmpty()) return rates;
+    for (String entry : samplingRatesConfig.split(",")) {
+      String[] parts = entry.split(":");
+      if (parts.length != 2) continue;
+      try {
+        double rate = Double.parseDouble(parts[1].trim());
+        rates.put(parts[0].trim(), Math.max(0, Math.min(1, rate)));
+      } catch (NumberFormatException ignored) {}
+    }
+    return rates;
+  }
+}
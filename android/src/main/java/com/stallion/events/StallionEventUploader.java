@@ -0,0 +1,204 @@
+package com.stallion.events;
+
+import android.util.Log;
+
+import com.stallion.networkmanager.StallionApiManager;
+import com.stallion.storage.StallionConfig;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the local event log to the events API in gzip compressed batches.
+ * <p>
+ * A flush is triggered once enough events are pending or the oldest pending event is old
+ * enough. Events are acknowledged in the log only after the server answers with a 2xx, so the
+ * log itself acts as the persistent outbox across process restarts.
+ */
+public class StallionEventUploader {
+  private static final String TAG = "StallionEventUploader";
+
+  private static final int MAX_UPLOAD_BATCH_COUNT = 500;
+  private static final int FLUSH_PENDING_THRESHOLD = 50;
+  private static final long FLUSH_MAX_EVENT_AGE_MS = 60 * 1000;
+  private static final long FLUSH_CHECK_INTERVAL_MS = 15 * 1000;
+  private static final long INITIAL_BACKOFF_MS = 5 * 1000;
+  private static final long MAX_BACKOFF_MS = 30 * 60 * 1000;
+
+  private final StallionEventLog eventLog;
+  private final String uploadUrl;
+  private final StallionConfig stallionConfig;
+  private final StallionEventQueuePolicy queuePolicy;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, TAG);
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final Random random = new Random();
+
+  private final AtomicBoolean isStarted = new AtomicBoolean(false);
+  private final AtomicInteger pendingSinceFlush = new AtomicInteger(0);
+  private final AtomicLong oldestPendingAt = new AtomicLong(0);
+  private int consecutiveFailures = 0;
+  private long nextAttemptAt = 0;
+
+  public StallionEventUploader(
+    StallionEventLog eventLog,
+    String uploadUrl,
+    StallionConfig stallionConfig,
+    StallionEventQueuePolicy queuePolicy
+  ) {
+    this.eventLog = eventLog;
+    this.uploadUrl = uploadUrl;
+    this.stallionConfig = stallionConfig;
+    this.queuePolicy = queuePolicy;
+  }
+
+  public void start() {
+    if (!isStarted.compareAndSet(false, true)) return;
+    // events left over from a previous process count as aged
+    oldestPendingAt.set(1);
+    scheduler.scheduleWithFixedDelay(this::flushIfDue, 0, FLUSH_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  public void onEventStored() {
+    oldestPendingAt.compareAndSet(0, System.currentTimeMillis());
+    if (pendingSinceFlush.incrementAndGet() == FLUSH_PENDING_THRESHOLD && isStarted.get()) {
+      scheduler.execute(this::flushIfDue);
+    }
+  }
+
+  public void flushNow() {
+    if (!isStarted.get()) return;
+    scheduler.execute(() -> {
+      nextAttemptAt = 0;
+      flush();
+    });
+  }
+
+  private void flushIfDue() {
+    long now = System.currentTimeMillis();
+    if (now < nextAttemptAt) return;
+    long oldest = oldestPendingAt.get();
+    boolean sizeDue = pendingSinceFlush.get() >= FLUSH_PENDING_THRESHOLD;
+    boolean ageDue = oldest != 0 && now - oldest >= FLUSH_MAX_EVENT_AGE_MS;
+    if (sizeDue || ageDue) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    try {
+      pendingSinceFlush.set(0);
+      oldestPendingAt.set(0);
+      StallionEventLog.Cursor cursor = StallionEventLog.Cursor.HEAD;
+      while (true) {
+        StallionEventLog.Batch batch = eventLog.read(cursor, MAX_UPLOAD_BATCH_COUNT);
+        if (batch.records.isEmpty()) break;
+
+        Map<String, Integer> dropCounts = queuePolicy.snapshotDropCounts();
+        int responseCode = StallionApiManager.postCompressed(
+          uploadUrl,
+          buildRequestBody(batch.records, dropCounts),
+          stallionConfig
+        );
+        if (responseCode < 200 || responseCode >= 300) {
+          onUploadFailed("HTTP error code: " + responseCode);
+          return;
+        }
+        if (dropCounts != null) {
+          queuePolicy.clearDropCounts(dropCounts);
+        }
+
+        List<String> eventIds = new ArrayList<>(batch.records.size());
+        for (StallionEventLog.Record record : batch.records) {
+          eventIds.add(record.eventId);
+        }
+        eventLog.acknowledge(eventIds);
+        cursor = batch.next;
+        if (batch.records.size() < MAX_UPLOAD_BATCH_COUNT) break;
+      }
+      consecutiveFailures = 0;
+      nextAttemptAt = 0;
+    } catch (Exception e) {
+      onUploadFailed(e.getMessage());
+    }
+  }
+
+  private void onUploadFailed(String reason) {
+    // keep the events due so the next check after the backoff retries them
+    oldestPendingAt.compareAndSet(0, 1);
+    consecutiveFailures++;
+    long backoff = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(consecutiveFailures - 1, 16));
+    long jitter = (long) (random.nextDouble() * backoff * 0.2);
+    nextAttemptAt = System.currentTimeMillis() + backoff + jitter;
+    Log.w(TAG, "Event upload failed, retrying in " + (backoff + jitter) + "ms: " + reason);
+  }
+
+  // Header fields of the first record are sent once for the whole batch, events from a
+  // segment with a different header carry their own
+  private byte[] buildRequestBody(List<StallionEventLog.Record> records, Map<String, Integer> dropCounts) {
+    ByteArrayOutputStream body = new ByteArrayOutputStream(records.size() * 128);
+    byte[] batchSegmentHeader = records.get(0).segmentHeader;
+    StallionEventCodec.Header batchHeader = StallionEventCodec.decodeHeader(batchSegmentHeader);
+    JSONObject batchFields = new JSONObject();
+    try {
+      if (batchHeader != null) {
+        StallionEventCodec.putHeader(batchFields, batchHeader);
+      } else {
+        batchFields.put("projectId", stallionConfig.getProjectId());
+      }
+    } catch (JSONException ignored) {}
+    // Top level fields are written one by one, the events are streamed into eventData after them
+    writeUtf8(body, "{");
+    Iterator<String> keys = batchFields.keys();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      writeUtf8(body, JSONObject.quote(key) + ":" + JSONObject.quote(batchFields.optString(key)) + ",");
+    }
+    if (dropCounts != null) {
+      writeUtf8(body, "\"droppedEvents\":" + StallionEventQueuePolicy.dropCountsToJson(dropCounts) + ",");
+    }
+    writeUtf8(body, "\"eventData\":[");
+    boolean isFirst = true;
+    for (StallionEventLog.Record record : records) {
+      boolean isBatchHeader = Arrays.equals(record.segmentHeader, batchSegmentHeader);
+      try {
+        JSONObject event = StallionEventCodec.toJson(
+          record.eventId,
+          record.payload,
+          isBatchHeader ? batchHeader : StallionEventCodec.decodeHeader(record.segmentHeader),
+          !isBatchHeader
+        );
+        if (!isFirst) body.write(',');
+        writeUtf8(body, event.toString());
+        isFirst = false;
+      } catch (Exception e) {
+        // undecodable records are dropped together with the batch acknowledgement
+        Log.w(TAG, "Skipping unreadable event " + record.eventId);
+      }
+    }
+    writeUtf8(body, "]}");
+    return body.toByteArray();
+  }
+
+  private static void writeUtf8(ByteArrayOutputStream out, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.write(bytes, 0, bytes.length);
+  }
+}
@@ -4,6 +4,12 @@ public class StallionApiConstants {
   // Buffer Size
   public static final int DOWNLOAD_BUFFER_SIZE = 1024 * 256;
 
+  // Timeouts
+  public static final int DOWNLOAD_CONNECT_TIMEOUT_MS = 15 * 1000;
+  public static final int DOWNLOAD_READ_TIMEOUT_MS = 30 * 1000;
+  public static final long VERIFY_TIMEOUT_MS = 30 * 1000;
+  public static final long EXTRACT_TIMEOUT_MS = 3 * 60 * 1000;
+
   // File and Folder Names
   public static final String ZIP_FILE_NAME = "build.zip";
   public static final String UNZIP_FOLDER_NAME = "/build";
@@ -13,6 +19,7 @@ public class StallionApiConstants {
   public static final String DOWNLOAD_ERROR_PREFIX = "Stallion download error: ";
   public static final String DOWNLOAD_FILESYSTEM_ERROR_MESSAGE = "Filesystem error in download";
   public static final String CORRUPTED_FILE_ERROR = "Corrupted file";
+  public static final String BYTECODE_MISMATCH_ERROR = "Incompatible Hermes bytecode: ";
 
   // Success Messages
   public static final String DOWNLOAD_SUCCESS_MESSAGE = "Success";
@@ -25,4 +32,5 @@ public class StallionApiConstants {
 
   public static final String STALLION_API_BASE = "https://airship-api.clinikally.shop";
   public static final String STALLION_INFO_API_PATH = "/api/v1/promoted/get-update-meta";
+  public static final String STALLION_LOG_EVENTS_API_PATH = "/api/v1/analytics/log-bulk-events";
 }
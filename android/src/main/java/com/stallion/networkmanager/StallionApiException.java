@@ -0,0 +1,23 @@
+package com.stallion.networkmanager;
+
+import java.io.IOException;
+
+public class StallionApiException extends IOException {
+  private final int statusCode;
+  private final long retryAfterMs;
+
+  public StallionApiException(int statusCode, long retryAfterMs) {
+    super("HTTP error code: " + statusCode);
+    this.statusCode = statusCode;
+    this.retryAfterMs = retryAfterMs;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  // Delay requested by the server through Retry-After, 0 when none was sent
+  public long getRetryAfterMs() {
+    return retryAfterMs;
+  }
+}
@@ -3,20 +3,22 @@ package com.stallion.networkmanager;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 
 import com.stallion.storage.StallionConfig;
 import com.stallion.storage.StallionStateManager;
 
 public class StallionApiManager {
+  // Update-meta responses are a few hundred bytes, anything past this is rejected unread
+  private static final int MAX_RESPONSE_BYTES = 256 * 1024;
 
   public static JSONObject post(String urlString, String requestBodyString) {
     HttpURLConnection urlConnection = null;
@@ -25,27 +27,9 @@ public class StallionApiManager {
       StallionConfig stallionConfig = stallionStateManager.getStallionConfig();
 
       // Set up the connection
-      URL url = new URL(urlString);
-      urlConnection = (HttpURLConnection) url.openConnection();
-      urlConnection.setRequestMethod("POST");
+      urlConnection = openPostConnection(urlString, stallionConfig);
       urlConnection.setRequestProperty("Content-Type", "application/json");
 
-      String appToken = stallionConfig.getAppToken();
-      String sdkToken = stallionConfig.getSdkToken();
-      String uid = stallionConfig.getUid();
-
-      if(appToken != null && !appToken.isEmpty()) {
-        urlConnection.setRequestProperty(StallionApiConstants.STALLION_APP_TOKEN_KEY, appToken);
-      }
-
-      if (sdkToken != null && !sdkToken.isEmpty()) {
-        urlConnection.setRequestProperty(StallionApiConstants.STALLION_SDK_TOKEN_KEY, sdkToken);
-      }
-
-      if (uid != null && !uid.isEmpty()) {
-        urlConnection.setRequestProperty(StallionApiConstants.STALLION_DEVICE_ID_KEY, uid);
-      }
-
       urlConnection.setDoOutput(true);
 
       // Write the request body
@@ -61,18 +45,8 @@ public class StallionApiManager {
         throw new IOException("HTTP error code: " + responseCode);
       }
 
-      // Read the response
-      StringBuilder result = new StringBuilder();
-      try (InputStream in = urlConnection.getInputStream();
-           BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
-        String line;
-        while ((line = reader.readLine()) != null) {
-          result.append(line);
-        }
-      }
-
       // Parse and return JSON
-      return new JSONObject(result.toString());
+      return new JSONObject(readResponseBody(urlConnection));
 
     } catch (Exception e) {
       e.printStackTrace();
@@ -92,5 +66,135 @@ public class StallionApiManager {
       }
     }
   }
-}
 
+  public static class ConditionalResponse {
+    public final boolean isNotModified;
+    public final String etag;
+    public final String body;
+    public final long retryAfterMs;
+
+    ConditionalResponse(boolean isNotModified, String etag, String body, long retryAfterMs) {
+      this.isNotModified = isNotModified;
+      this.etag = etag;
+      this.body = body;
+      this.retryAfterMs = retryAfterMs;
+    }
+  }
+
+  // Posts a JSON body with an optional If-None-Match validator, a 304 comes back without a body
+  public static ConditionalResponse postConditional(String urlString, String requestBodyString, String etag) throws IOException {
+    HttpURLConnection urlConnection = null;
+    try {
+      StallionConfig stallionConfig = StallionStateManager.getInstance().getStallionConfig();
+      urlConnection = openPostConnection(urlString, stallionConfig);
+      urlConnection.setRequestProperty("Content-Type", "application/json");
+      if (etag != null && !etag.isEmpty()) {
+        urlConnection.setRequestProperty("If-None-Match", etag);
+      }
+      urlConnection.setDoOutput(true);
+
+      try (OutputStream os = urlConnection.getOutputStream();
+           OutputStreamWriter osw = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+        osw.write(requestBodyString);
+        osw.flush();
+      }
+
+      int responseCode = urlConnection.getResponseCode();
+      long retryAfterMs = parseRetryAfter(urlConnection.getHeaderField("Retry-After"));
+      if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return new ConditionalResponse(true, etag, null, retryAfterMs);
+      }
+      if (responseCode != HttpURLConnection.HTTP_OK) {
+        throw new StallionApiException(responseCode, retryAfterMs);
+      }
+      return new ConditionalResponse(
+        false,
+        urlConnection.getHeaderField("ETag"),
+        readResponseBody(urlConnection),
+        retryAfterMs
+      );
+    } finally {
+      if (urlConnection != null) {
+        urlConnection.disconnect();
+      }
+    }
+  }
+
+  // Only the delay-seconds form of Retry-After is supported
+  private static long parseRetryAfter(String retryAfter) {
+    if (retryAfter == null) return 0;
+    try {
+      return Math.max(0, Long.parseLong(retryAfter.trim())) * 1000;
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static String readResponseBody(HttpURLConnection urlConnection) throws IOException {
+    int contentLength = urlConnection.getContentLength();
+    if (contentLength > MAX_RESPONSE_BYTES) {
+      throw new IOException("Response too large: " + contentLength + " bytes");
+    }
+    ByteArrayOutputStream body = new ByteArrayOutputStream(contentLength > 0 ? contentLength : 1024);
+    byte[] buffer = new byte[4096];
+    try (InputStream in = urlConnection.getInputStream()) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        if (body.size() + read > MAX_RESPONSE_BYTES) {
+          throw new IOException("Response exceeds " + MAX_RESPONSE_BYTES + " bytes");
+        }
+        body.write(buffer, 0, read);
+      }
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  // Posts a gzip compressed JSON body and returns the HTTP status code
+  public static int postCompressed(String urlString, byte[] requestBody, StallionConfig stallionConfig) throws IOException {
+    ByteArrayOutputStream compressedBody = new ByteArrayOutputStream(requestBody.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressedBody)) {
+      gzip.write(requestBody);
+    }
+
+    HttpURLConnection urlConnection = null;
+    try {
+      urlConnection = openPostConnection(urlString, stallionConfig);
+      urlConnection.setRequestProperty("Content-Type", "application/json");
+      urlConnection.setRequestProperty("Content-Encoding", "gzip");
+      urlConnection.setDoOutput(true);
+      urlConnection.setFixedLengthStreamingMode(compressedBody.size());
+
+      try (OutputStream os = urlConnection.getOutputStream()) {
+        compressedBody.writeTo(os);
+      }
+      return urlConnection.getResponseCode();
+    } finally {
+      if (urlConnection != null) {
+        urlConnection.disconnect();
+      }
+    }
+  }
+
+  private static HttpURLConnection openPostConnection(String urlString, StallionConfig stallionConfig) throws IOException {
+    URL url = new URL(urlString);
+    HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+    urlConnection.setRequestMethod("POST");
+
+    String appToken = stallionConfig.getAppToken();
+    String sdkToken = stallionConfig.getSdkToken();
+    String uid = stallionConfig.getUid();
+
+    if(appToken != null && !appToken.isEmpty()) {
+      urlConnection.setRequestProperty(StallionApiConstants.STALLION_APP_TOKEN_KEY, appToken);
+    }
+
+    if (sdkToken != null && !sdkToken.isEmpty()) {
+      urlConnection.setRequestProperty(StallionApiConstants.STALLION_SDK_TOKEN_KEY, sdkToken);
+    }
+
+    if (uid != null && !uid.isEmpty()) {
+      urlConnection.setRequestProperty(StallionApiConstants.STALLION_DEVICE_ID_KEY, uid);
+    }
+    return urlConnection;
+  }
+}
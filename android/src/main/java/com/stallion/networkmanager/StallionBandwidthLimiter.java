@@ -0,0 +1,81 @@
+package com.stallion.networkmanager;
+
+import com.stallion.storage.StallionConfig;
+import com.stallion.storage.StallionStateManager;
+import com.stallion.utils.StallionClock;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Token bucket shared by all bundle downloads, so an update does not take bandwidth from the
+ * app's own requests.
+ * <p>
+ * The rate follows the app's lifecycle, AirshipForegroundDownloadKbps while it is in the
+ * foreground and AirshipBackgroundDownloadKbps otherwise, with 0 meaning unlimited. StallionModule
+ * reports lifecycle changes so a download waiting on foreground tokens speeds up as soon as the
+ * app is backgrounded. The bucket holds one second of tokens, enough to smooth bursts.
+ */
+public class StallionBandwidthLimiter {
+  interface Rate {
+    long bytesPerSecond();
+  }
+
+  interface Clock {
+    long elapsedMs();
+  }
+
+  private static final Object lock = new Object();
+  private static double tokens;
+  private static long lastRefillAt = -1;
+
+  // Called by the download loop for every chunk read, blocks until the chunk fits the rate
+  public static void acquire(int bytes) throws InterruptedIOException {
+    acquire(bytes, StallionBandwidthLimiter::getBytesPerSecond, StallionClock::elapsedMs);
+  }
+
+  // The rate is read again after every wait, so a lifecycle change applies to a waiting chunk
+  static void acquire(int bytes, Rate rate, Clock clock) throws InterruptedIOException {
+    synchronized (lock) {
+      try {
+        while (true) {
+          long bytesPerSecond = rate.bytesPerSecond();
+          if (bytesPerSecond <= 0) return;
+          refill(bytesPerSecond, clock.elapsedMs());
+          // A chunk larger than the bucket goes through once it is full and leaves it in debt
+          if (tokens >= Math.min(bytes, bytesPerSecond)) {
+            tokens -= bytes;
+            return;
+          }
+          long waitMs = (long) Math.ceil((Math.min(bytes, bytesPerSecond) - tokens) * 1000 / bytesPerSecond);
+          lock.wait(Math.max(1, waitMs));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Download interrupted");
+      }
+    }
+  }
+
+  // Wakes waiting downloads so they pick up the rate for the new lifecycle state
+  public static void onLifecycleChanged() {
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+  }
+
+  private static void refill(long bytesPerSecond, long now) {
+    if (lastRefillAt >= 0 && now > lastRefillAt) {
+      tokens += (now - lastRefillAt) * bytesPerSecond / 1000.0;
+    }
+    tokens = Math.min(tokens, bytesPerSecond);
+    lastRefillAt = now;
+  }
+
+  private static long getBytesPerSecond() {
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    StallionConfig config = stateManager.getStallionConfig();
+    return stateManager.getIsInForeground()
+      ? config.getForegroundDownloadBytesPerSecond()
+      : config.getBackgroundDownloadBytesPerSecond();
+  }
+}
@@ -0,0 +1,27 @@
+package com.stallion.networkmanager;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a downloaded bundle was compiled to a Hermes bytecode version the installed runtime
+ * cannot load. Retrying the download cannot fix it, so the release is rejected.
+ */
+public class StallionBytecodeMismatchException extends IOException {
+  private final int releaseVersion;
+  private final int runtimeVersion;
+
+  public StallionBytecodeMismatchException(int releaseVersion, int runtimeVersion) {
+    super(StallionApiConstants.BYTECODE_MISMATCH_ERROR
+      + "release " + releaseVersion + ", runtime " + runtimeVersion);
+    this.releaseVersion = releaseVersion;
+    this.runtimeVersion = runtimeVersion;
+  }
+
+  public int getReleaseVersion() {
+    return releaseVersion;
+  }
+
+  public int getRuntimeVersion() {
+    return runtimeVersion;
+  }
+}
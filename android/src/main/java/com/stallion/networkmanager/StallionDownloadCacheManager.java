@@ -6,16 +6,25 @@ import com.stallion.utils.StallionFileManager;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 public class StallionDownloadCacheManager {
   private static final String metaFilePath = "/download-cache.meta";
+  private static final String validatorFilePath = "/download-cache.validator";
 
-  public static long getDownloadCache(StallionConfig config, String downloadUrl, String downloadPath) {
-    String lastDownloadingUrl = config.getLastDownloadingUrl();
+  // releaseKey names what is downloaded into downloadPath, the URL for stage and the release hash for prod
+  public static long getDownloadCache(
+    StallionConfig config,
+    StallionDownloadRegistry.Scope scope,
+    String releaseKey,
+    String downloadPath
+  ) {
+    boolean isProd = scope == StallionDownloadRegistry.Scope.PROD;
+    String lastReleaseKey = config.getLastDownloadingKey(isProd);
     long alreadyDownloaded = readMetaFile(downloadPath);
-    if(!Objects.equals(lastDownloadingUrl, downloadUrl) || alreadyDownloaded <= 0) {
-      config.setLastDownloadingUrl(downloadUrl);
+    if(!Objects.equals(lastReleaseKey, releaseKey) || alreadyDownloaded <= 0) {
+      config.setLastDownloadingKey(isProd, releaseKey);
       StallionFileManager.deleteFileOrFolderSilently(new File(downloadPath));
       return 0;
     } else {
@@ -29,7 +38,26 @@ public class StallionDownloadCacheManager {
     } catch (Exception ignored) {}
   }
 
-  private static long readMetaFile(String path) {
+  // ETag or Last-Modified of the partial download, sent as If-Range when resuming
+  public static void saveValidator(String path, String validator) {
+    try (FileOutputStream fos = new FileOutputStream(path + validatorFilePath)) {
+      fos.write(validator.getBytes(StandardCharsets.UTF_8));
+    } catch (Exception ignored) {}
+  }
+
+  public static String readValidator(String path) {
+    File validator = new File(path + validatorFilePath);
+    if (!validator.exists()) return "";
+    try (FileInputStream fis = new FileInputStream(validator)) {
+      byte[] data = new byte[(int) validator.length()];
+      int read = fis.read(data);
+      return read > 0 ? new String(data, 0, read, StandardCharsets.UTF_8).trim() : "";
+    } catch (Exception e) {
+      return "";
+    }
+  }
+
+  static long readMetaFile(String path) {
     File meta = new File(path + metaFilePath);
     if (!meta.exists()) return 0;
     try (FileInputStream fis = new FileInputStream(meta)) {
@@ -44,5 +72,7 @@ public class StallionDownloadCacheManager {
   public static void deleteDownloadCache(String path) {
     File meta = new File(path + metaFilePath);
     if (meta.exists()) meta.delete();
+    File validator = new File(path + validatorFilePath);
+    if (validator.exists()) validator.delete();
   }
 }
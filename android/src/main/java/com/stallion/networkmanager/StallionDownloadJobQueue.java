@@ -0,0 +1,246 @@
+package com.stallion.networkmanager;
+
+import com.stallion.storage.StallionStateManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Durable queue of prod release downloads.
+ * <p>
+ * A release found by a sync is queued here before it is downloaded, and stays queued until it is
+ * installed or has failed {@link #MAX_ATTEMPTS} times. A download cut short by a process kill is
+ * picked up again on the next launch without waiting for a sync, resuming from the bytes already
+ * on disk.
+ */
+public class StallionDownloadJobQueue {
+  private static final String JOBS_KEY = "StallionDownloadJobs";
+  private static final String REJECTED_HASH_KEY = "StallionRejectedReleaseHash";
+  static final int MAX_ATTEMPTS = 5;
+  // Oldest rejections are forgotten first, a release that old is no longer offered by syncs
+  private static final int MAX_REJECTED_HASHES = 20;
+
+  public enum JobState {
+    QUEUED,
+    DOWNLOADING,
+    FAILED
+  }
+
+  public static class Job {
+    public final String releaseHash;
+    public final String appVersion;
+    public String downloadUrl;
+    public long bundleSize;
+    public boolean isUrgent;
+    public long offset;
+    public int attempts;
+    public JobState state;
+
+    Job(String releaseHash, String appVersion, String downloadUrl, long bundleSize) {
+      this.releaseHash = releaseHash;
+      this.appVersion = appVersion;
+      this.downloadUrl = downloadUrl;
+      this.bundleSize = bundleSize;
+      this.state = JobState.QUEUED;
+    }
+
+    JSONObject toJSON() throws JSONException {
+      JSONObject json = new JSONObject();
+      json.put("releaseHash", releaseHash);
+      json.put("appVersion", appVersion);
+      json.put("downloadUrl", downloadUrl);
+      json.put("bundleSize", bundleSize);
+      json.put("isUrgent", isUrgent);
+      json.put("offset", offset);
+      json.put("attempts", attempts);
+      json.put("state", state.name());
+      return json;
+    }
+
+    static Job fromJSON(JSONObject json) {
+      Job job = new Job(
+        json.optString("releaseHash"),
+        json.optString("appVersion"),
+        json.optString("downloadUrl"),
+        json.optLong("bundleSize")
+      );
+      job.isUrgent = json.optBoolean("isUrgent");
+      job.offset = json.optLong("offset");
+      job.attempts = json.optInt("attempts");
+      try {
+        job.state = JobState.valueOf(json.optString("state"));
+      } catch (IllegalArgumentException e) {
+        job.state = JobState.QUEUED;
+      }
+      return job;
+    }
+  }
+
+  private static List<Job> jobs;
+  private static Set<String> rejectedHashes;
+
+  /**
+   * Queues a release, or refreshes the URL and size of an already queued one. Presigned URLs
+   * expire, so the latest URL always wins while the bytes downloaded so far are kept.
+   */
+  public static synchronized void enqueue(String releaseHash, String downloadUrl, long bundleSize, boolean isUrgent) {
+    List<Job> queue = load();
+    for (Job job : queue) {
+      if (job.releaseHash.equals(releaseHash)) {
+        job.downloadUrl = downloadUrl;
+        job.isUrgent = isUrgent;
+        if (bundleSize > 0) job.bundleSize = bundleSize;
+        if (job.state == JobState.FAILED) job.state = JobState.QUEUED;
+        persist();
+        return;
+      }
+    }
+    String appVersion = StallionStateManager.getInstance().getStallionConfig().getAppVersion();
+    Job job = new Job(releaseHash, appVersion, downloadUrl, bundleSize);
+    job.isUrgent = isUrgent;
+    queue.add(job);
+    persist();
+  }
+
+  // Oldest job that is not parked after a failure, including one interrupted mid download
+  public static synchronized Job peek() {
+    for (Job job : load()) {
+      if (job.state != JobState.FAILED) return job;
+    }
+    return null;
+  }
+
+  // Failed jobs are retried on the next launch
+  public static synchronized void requeueFailed() {
+    boolean isChanged = false;
+    for (Job job : load()) {
+      if (job.state == JobState.FAILED) {
+        job.state = JobState.QUEUED;
+        isChanged = true;
+      }
+    }
+    if (isChanged) persist();
+  }
+
+  public static synchronized void markStarted(String releaseHash) {
+    Job job = find(releaseHash);
+    if (job == null) return;
+    job.state = JobState.DOWNLOADING;
+    job.attempts++;
+    persist();
+  }
+
+  // Parks the job until the next launch, or drops it once it ran out of attempts
+  public static synchronized void markFailed(String releaseHash, long offset) {
+    Job job = find(releaseHash);
+    if (job == null) return;
+    if (job.attempts >= MAX_ATTEMPTS) {
+      load().remove(job);
+    } else {
+      job.state = JobState.FAILED;
+      job.offset = offset;
+    }
+    persist();
+  }
+
+  public static synchronized void remove(String releaseHash) {
+    Iterator<Job> iterator = load().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().releaseHash.equals(releaseHash)) {
+        iterator.remove();
+      }
+    }
+    persist();
+  }
+
+  // Drops the job and keeps later syncs from queueing a release this app can never run
+  public static synchronized void reject(String releaseHash) {
+    Set<String> rejected = loadRejected();
+    if (rejected.add(releaseHash)) {
+      Iterator<String> oldest = rejected.iterator();
+      while (rejected.size() > MAX_REJECTED_HASHES) {
+        oldest.next();
+        oldest.remove();
+      }
+      StallionStateManager.getInstance().setString(REJECTED_HASH_KEY, new JSONArray(rejected).toString());
+    }
+    remove(releaseHash);
+  }
+
+  public static synchronized boolean isRejected(String releaseHash) {
+    return loadRejected().contains(releaseHash);
+  }
+
+  public static synchronized boolean isEmpty() {
+    return load().isEmpty();
+  }
+
+  public static synchronized Job get(String releaseHash) {
+    return find(releaseHash);
+  }
+
+  private static Job find(String releaseHash) {
+    for (Job job : load()) {
+      if (job.releaseHash.equals(releaseHash)) return job;
+    }
+    return null;
+  }
+
+  private static List<Job> load() {
+    if (jobs != null) return jobs;
+    jobs = new ArrayList<>();
+    String stored = StallionStateManager.getInstance().getString(JOBS_KEY, "");
+    if (stored.isEmpty()) return jobs;
+    try {
+      JSONArray array = new JSONArray(stored);
+      for (int i = 0; i < array.length(); i++) {
+        JSONObject json = array.optJSONObject(i);
+        if (json != null) jobs.add(Job.fromJSON(json));
+      }
+    } catch (JSONException e) {
+      e.printStackTrace();
+    }
+    return jobs;
+  }
+
+  // Stored as a JSON array, older versions stored a single hash
+  private static Set<String> loadRejected() {
+    if (rejectedHashes != null) return rejectedHashes;
+    rejectedHashes = new LinkedHashSet<>();
+    String stored = StallionStateManager.getInstance().getString(REJECTED_HASH_KEY, "");
+    if (stored.isEmpty()) return rejectedHashes;
+    if (!stored.startsWith("[")) {
+      rejectedHashes.add(stored);
+      return rejectedHashes;
+    }
+    try {
+      JSONArray array = new JSONArray(stored);
+      for (int i = 0; i < array.length(); i++) {
+        String releaseHash = array.optString(i);
+        if (!releaseHash.isEmpty()) rejectedHashes.add(releaseHash);
+      }
+    } catch (JSONException e) {
+      e.printStackTrace();
+    }
+    return rejectedHashes;
+  }
+
+  private static void persist() {
+    try {
+      JSONArray array = new JSONArray();
+      for (Job job : load()) {
+        array.put(job.toJSON());
+      }
+      StallionStateManager.getInstance().setString(JOBS_KEY, array.toString());
+    } catch (JSONException e) {
+      e.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.stallion.networkmanager;
+
+import com.stallion.utils.StallionFuture;
+import com.stallion.utils.StallionProgressPublisher;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Registry of in-flight downloads, one per scope since each scope downloads into a single temp slot.
+ * <p>
+ * A request for the release already being downloaded joins it and follows its result and
+ * progress instead of starting a second transfer. A request for another release while the scope
+ * is busy gets null so the caller can queue or reject it.
+ */
+public class StallionDownloadRegistry {
+
+  public enum Scope {
+    PROD,
+    STAGE
+  }
+
+  public static final class InFlightDownload {
+    public final String releaseHash;
+    public final StallionFuture<String> result = new StallionFuture<>();
+    public final StallionProgressPublisher progress = new StallionProgressPublisher();
+    private boolean isClaimed;
+
+    InFlightDownload(String releaseHash) {
+      this.releaseHash = releaseHash;
+    }
+
+    // True for exactly one caller, which then has to run the download and settle result
+    public synchronized boolean claim() {
+      if (isClaimed) return false;
+      isClaimed = true;
+      return true;
+    }
+  }
+
+  public interface IdleAction {
+    boolean run();
+  }
+
+  private static final Map<Scope, InFlightDownload> inFlight = new EnumMap<>(Scope.class);
+
+  // Returns the download of releaseHash in this scope, or null when another release is in flight
+  public static synchronized InFlightDownload join(Scope scope, String releaseHash) {
+    InFlightDownload download = inFlight.get(scope);
+    if (download != null) {
+      return download.releaseHash.equals(releaseHash) ? download : null;
+    }
+    InFlightDownload newDownload = new InFlightDownload(releaseHash);
+    inFlight.put(scope, newDownload);
+    // Registered first, so the scope is free again before any other listener runs
+    newDownload.result.whenComplete((value, error) -> release(scope, newDownload));
+    return newDownload;
+  }
+
+  public static synchronized String getInFlightHash(Scope scope) {
+    InFlightDownload download = inFlight.get(scope);
+    return download != null ? download.releaseHash : null;
+  }
+
+  // Runs action only while nothing is in flight in the scope, no download can start in it until it returns
+  public static synchronized boolean runIfIdle(Scope scope, IdleAction action) {
+    if (inFlight.containsKey(scope)) return false;
+    return action.run();
+  }
+
+  private static synchronized void release(Scope scope, InFlightDownload download) {
+    if (inFlight.get(scope) == download) {
+      inFlight.remove(scope);
+    }
+  }
+}
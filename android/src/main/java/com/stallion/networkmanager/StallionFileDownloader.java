@@ -1,17 +1,17 @@
 package com.stallion.networkmanager;
 
+import android.os.Process;
 import android.os.StatFs;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -19,286 +19,268 @@ import android.util.Log;
 
 import com.stallion.storage.StallionConfig;
 import com.stallion.storage.StallionStateManager;
+import com.stallion.utils.StallionBytecodeCheck;
 import com.stallion.utils.StallionFileManager;
+import com.stallion.utils.StallionIntegrityIndex;
+import com.stallion.utils.StallionFuture;
+import com.stallion.utils.StallionProgressPublisher;
 
 public class StallionFileDownloader {
 
   private static final String TAG = "StallionFileDownloader";
-  private static final ExecutorService executor = Executors.newSingleThreadExecutor();
-
-  public static void downloadBundle(
-    String downloadUrl,
-    String downloadDirectory,
-    long alreadyDownloaded,
-    StallionDownloadCallback stallionDownloadCallback
-  ) {
-    executor.execute(() -> {
-      try {
-        // Prepare for download
-        File downloadedZip = prepareForDownload(downloadDirectory);
-
-        // Fetch appToken and apiKey
-        StallionStateManager stateManager = StallionStateManager.getInstance();
-        StallionConfig config = stateManager.getStallionConfig();
-        String appToken = config.getAppToken();
-        String sdkToken = config.getSdkToken();
-
-        // Get file size
-        long fileSize = getFileSize(downloadUrl, appToken, sdkToken);
-        if (fileSize <= 0) {
-          stallionDownloadCallback.onReject(
-            StallionApiConstants.DOWNLOAD_ERROR_PREFIX,
-            "File size is zero or unknown"
-          );
-          return;
-        }
-
-        // Check available storage
-        if (!isEnoughSpaceAvailable(downloadDirectory, fileSize)) {
-          stallionDownloadCallback.onReject(
-            StallionApiConstants.DOWNLOAD_ERROR_PREFIX,
-            "Not enough space to download the file"
-          );
-          return;
-        }
-
-        // Download file
-        downloadFile(downloadUrl, downloadedZip, appToken, sdkToken, stallionDownloadCallback, alreadyDownloaded, downloadDirectory);
-
-        // Validate and unzip the downloaded file
-        validateAndUnzip(downloadedZip, downloadDirectory, stallionDownloadCallback);
-
-      } catch (Exception e) {
-        Log.e(TAG, "Error in downloadBundle: " + e.getMessage(), e);
-      }
-    });
-  }
-
-  public static void downloadBundleWithSize(
+  // Background priority, extraction should lose to the UI thread for CPU and I/O
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, "StallionInstall");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Downloads the bundle zip, verifies it and extracts it into downloadDirectory. The size,
+   * range support and validator all come from the response that carries the body; knownFileSize
+   * is only used when the server sends no length. The returned future completes with
+   * DOWNLOAD_SUCCESS_MESSAGE, and cancelling it stops the step that is running.
+   */
+  public static StallionFuture<String> downloadBundle(
     String downloadUrl,
     String downloadDirectory,
     long alreadyDownloaded,
     long knownFileSize,
-    StallionDownloadCallback stallionDownloadCallback
+    StallionProgressPublisher progress
   ) {
-    Log.d(TAG, "🚀 Starting bundle download with known size");
+    Log.d(TAG, "🚀 Starting bundle download");
     Log.d(TAG, "   URL: " + downloadUrl);
     Log.d(TAG, "   Directory: " + downloadDirectory);
     Log.d(TAG, "   Already downloaded: " + alreadyDownloaded);
     Log.d(TAG, "   Known file size: " + knownFileSize + " bytes");
-    
-    executor.execute(() -> {
-      try {
-        // Prepare for download
-        File downloadedZip = prepareForDownload(downloadDirectory);
-        Log.d(TAG, "📁 Download zip prepared: " + downloadedZip.getAbsolutePath());
-
-        // Fetch appToken and apiKey
-        StallionStateManager stateManager = StallionStateManager.getInstance();
-        StallionConfig config = stateManager.getStallionConfig();
-        String appToken = config.getAppToken();
-        String sdkToken = config.getSdkToken();
-        Log.d(TAG, "🔑 Tokens - App: '" + appToken + "', SDK: '" + sdkToken + "'");
-
-        // Use the known file size from API instead of making HEAD request
-        long fileSize = knownFileSize;
-        if (fileSize <= 0) {
-          Log.w(TAG, "⚠️ API provided invalid file size, using fallback");
-          fileSize = 100 * 1024 * 1024; // Assume 100MB max
-        }
-        Log.d(TAG, "📏 Using file size from API: " + fileSize);
-
-        // Check available storage
-        if (!isEnoughSpaceAvailable(downloadDirectory, fileSize)) {
-          stallionDownloadCallback.onReject(
-            StallionApiConstants.DOWNLOAD_ERROR_PREFIX,
-            "Not enough space to download the file"
-          );
-          return;
-        }
-
-        // Download file with known size
-        downloadFileWithKnownSize(downloadUrl, downloadedZip, appToken, sdkToken, stallionDownloadCallback, alreadyDownloaded, fileSize, downloadDirectory);
-
-        // Validate and unzip the downloaded file
-        validateAndUnzip(downloadedZip, downloadDirectory, stallionDownloadCallback);
 
-      } catch (Exception e) {
-        Log.e(TAG, "Error in downloadBundleWithSize: " + e.getMessage(), e);
-      }
+    return StallionFuture.<File>submit(executor, future ->
+      fetchZip(downloadUrl, downloadDirectory, alreadyDownloaded, knownFileSize, future, progress)
+    ).thenCompose(downloadedZip -> {
+      StallionFuture<String> installed = StallionFuture.<File>submit(
+        executor, StallionApiConstants.VERIFY_TIMEOUT_MS, "Verification", future -> verifyZip(downloadedZip)
+      ).thenCompose(verifiedZip ->
+        StallionFuture.<String>submit(
+          executor, StallionApiConstants.EXTRACT_TIMEOUT_MS, "Extraction", future -> extract(verifiedZip, downloadDirectory, future)
+        )
+      );
+      // The zip is only kept for resuming the download, once it is complete it is not needed. The
+      // delete queues behind the install thread, so a step that timed out has stopped reading it.
+      installed.whenComplete((result, error) ->
+        executor.execute(() -> StallionFileManager.deleteFileOrFolderSilently(downloadedZip))
+      );
+      return installed;
     });
   }
 
-  private static long getFileSize(String downloadUrl, String appToken, String apiKey) throws IOException {
-    HttpURLConnection connection = null;
+  private static File fetchZip(
+    String downloadUrl,
+    String downloadDirectory,
+    long alreadyDownloaded,
+    long knownFileSize,
+    StallionFuture<File> future,
+    StallionProgressPublisher progress
+  ) throws IOException {
+    File downloadedZip = prepareForDownload(downloadDirectory);
+    StallionConfig config = StallionStateManager.getInstance().getStallionConfig();
+    String validator = alreadyDownloaded > 0 ? StallionDownloadCacheManager.readValidator(downloadDirectory) : "";
+
+    HttpURLConnection connection = setupConnection(
+      downloadUrl,
+      config.getAppToken(),
+      config.getSdkToken(),
+      alreadyDownloaded,
+      validator
+    );
     try {
-      connection = setupConnection(downloadUrl, appToken, apiKey, 0);
-      return connection.getContentLength();
-    } finally {
-      if (connection != null) {
+      int responseCode = connection.getResponseCode();
+      if (responseCode == 416 && alreadyDownloaded > 0) {
+        // The partial file no longer matches what the server has, start over
         connection.disconnect();
+        StallionDownloadCacheManager.deleteDownloadCache(downloadDirectory);
+        return fetchZip(downloadUrl, downloadDirectory, 0, knownFileSize, future, progress);
       }
-    }
-  }
-
-  private static boolean isEnoughSpaceAvailable(String directoryPath, long fileSize) {
-    File directory = new File(directoryPath);
-    if (!directory.exists()) {
-      directory.mkdirs();
-    }
-    StatFs statFs = new StatFs(directory.getPath());
-    long availableBytes = (long) statFs.getAvailableBlocksLong() * statFs.getBlockSizeLong();
-    return availableBytes >= fileSize;
-  }
-
-  private static File prepareForDownload(String downloadDirectory) throws IOException {
-    File downloadFolder = new File(downloadDirectory);
-    if (!downloadFolder.exists()) {
-      if (!downloadFolder.mkdirs()) {
-        throw new IOException("Failed to create download directory: " + downloadDirectory);
+      if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_PARTIAL) {
+        throw new IOException("Download failed with HTTP " + responseCode);
       }
-    }
-    return new File(downloadFolder, StallionApiConstants.ZIP_FILE_NAME);
-  }
-
-  private static void downloadFile(
-    String downloadUrl,
-    File destinationFile,
-    String appToken,
-    String sdkToken,
-    StallionDownloadCallback callback,
-    long alreadyDownloaded,
-    String downloadDirectory
-  ) throws IOException {
-    HttpURLConnection connection = setupConnection(downloadUrl, appToken, sdkToken, alreadyDownloaded);
-    try (
-      BufferedInputStream inputStream = new BufferedInputStream(connection.getInputStream());
-      RandomAccessFile raf = new RandomAccessFile(destinationFile, "rw")
-    ) {
-      raf.seek(alreadyDownloaded);
-      byte[] buffer = new byte[StallionApiConstants.DOWNLOAD_BUFFER_SIZE];
-      long totalBytes = connection.getContentLength() + alreadyDownloaded;
-      long receivedBytes = alreadyDownloaded;
-      int bytesRead;
-      double lastProgress = (double) receivedBytes / totalBytes;
 
-      // Ensure totalBytes is valid
-      if (totalBytes <= 0) {
-        callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, "Invalid content length: ");
-        return;
+      long rangeStart = getRangeStart(connection);
+      boolean isRangeResponse = responseCode == HttpURLConnection.HTTP_PARTIAL && rangeStart == alreadyDownloaded;
+      if (responseCode == HttpURLConnection.HTTP_PARTIAL && !isRangeResponse && alreadyDownloaded > 0) {
+        // A partial body that does not say it starts where the file ends cannot be appended to it
+        Log.d(TAG, "🔁 Partial response without a matching Content-Range, restarting download from 0");
+        connection.disconnect();
+        StallionDownloadCacheManager.deleteDownloadCache(downloadDirectory);
+        return fetchZip(downloadUrl, downloadDirectory, 0, knownFileSize, future, progress);
       }
-
-      while ((bytesRead = inputStream.read(buffer)) != -1) {
-        raf.write(buffer, 0, bytesRead);
-        receivedBytes += bytesRead;
-
-        StallionDownloadCacheManager.saveDownloadCache(downloadDirectory, receivedBytes);
-
-        double progress = (double) receivedBytes / totalBytes;
-        if (Double.isNaN(progress) || Double.isInfinite(progress)) {
-          callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, "Invalid progress calculation");
-          return;
-        }
-
-        if (progress - lastProgress >= 0.1) {
-          lastProgress = progress;
-          callback.onProgress(progress);
+      long offset = alreadyDownloaded;
+      if (!isRangeResponse) {
+        // Range ignored, or refused by If-Range because the file changed, the body is the whole file
+        if (alreadyDownloaded > 0) {
+          // The checkpoint and validator describe the old partial file, not this body
+          Log.d(TAG, "🔁 Server sent the full file, restarting download from 0");
+          StallionDownloadCacheManager.deleteDownloadCache(downloadDirectory);
         }
+        offset = 0;
+      }
+      long totalBytes = getTotalBytes(connection, offset, knownFileSize);
+      if (totalBytes > 0 && !isEnoughSpaceAvailable(downloadDirectory, totalBytes - offset)) {
+        throw new IOException("Not enough space to download the file");
       }
 
-      raf.close();
-      inputStream.close();
-
-      // Check for incomplete download
-      if (receivedBytes < totalBytes) {
-        callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, "Incomplete file download");
-        return;
+      // Without byte range support a partial file cannot be resumed, so progress is not checkpointed
+      String acceptRanges = connection.getHeaderField("Accept-Ranges");
+      boolean isResumable = acceptRanges != null
+        && "bytes".equalsIgnoreCase(acceptRanges.trim())
+        && (responseCode == HttpURLConnection.HTTP_OK || isRangeResponse);
+      String responseValidator = getValidator(connection);
+      if (isResumable && !responseValidator.isEmpty()) {
+        StallionDownloadCacheManager.saveValidator(downloadDirectory, responseValidator);
       }
-    } catch (IOException e) {
-      callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, "IOException occurred: ");
-      throw e;
+      Log.d(TAG, "📊 Downloading from " + offset + " of " + totalBytes + " bytes, resumable: " + isResumable);
+
+      readBody(connection, downloadedZip, offset, totalBytes, isResumable, downloadDirectory, future, progress);
+      return downloadedZip;
     } finally {
       connection.disconnect();
     }
   }
 
-  private static void downloadFileWithKnownSize(
-    String downloadUrl,
+  private static void readBody(
+    HttpURLConnection connection,
     File destinationFile,
-    String appToken,
-    String sdkToken,
-    StallionDownloadCallback callback,
-    long alreadyDownloaded,
-    long knownFileSize,
-    String downloadDirectory
+    long offset,
+    long totalBytes,
+    boolean isResumable,
+    String downloadDirectory,
+    StallionFuture<?> future,
+    StallionProgressPublisher progress
   ) throws IOException {
-    Log.d(TAG, "🚀 Starting download with known file size: " + knownFileSize + " bytes");
-    HttpURLConnection connection = setupConnection(downloadUrl, appToken, sdkToken, alreadyDownloaded);
     try (
       BufferedInputStream inputStream = new BufferedInputStream(connection.getInputStream());
       RandomAccessFile raf = new RandomAccessFile(destinationFile, "rw")
     ) {
-      raf.seek(alreadyDownloaded);
+      raf.setLength(offset);
+      raf.seek(offset);
       byte[] buffer = new byte[StallionApiConstants.DOWNLOAD_BUFFER_SIZE];
-      long totalBytes = knownFileSize; // Use the known file size from API
-      long receivedBytes = alreadyDownloaded;
+      long receivedBytes = offset;
+      double lastProgress = totalBytes > 0 ? (double) receivedBytes / totalBytes : 0;
       int bytesRead;
-      double lastProgress = (double) receivedBytes / totalBytes;
-
-      Log.d(TAG, "📊 Download progress - Total: " + totalBytes + ", Already downloaded: " + alreadyDownloaded);
 
       while ((bytesRead = inputStream.read(buffer)) != -1) {
+        if (future.isCancelled()) {
+          throw new CancellationException("Download cancelled");
+        }
+        StallionBandwidthLimiter.acquire(bytesRead);
         raf.write(buffer, 0, bytesRead);
         receivedBytes += bytesRead;
 
-        StallionDownloadCacheManager.saveDownloadCache(downloadDirectory, receivedBytes);
-
-        double progress = (double) receivedBytes / totalBytes;
-        if (Double.isNaN(progress) || Double.isInfinite(progress)) {
-          callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, "Invalid progress calculation");
-          return;
+        if (isResumable) {
+          StallionDownloadCacheManager.saveDownloadCache(downloadDirectory, receivedBytes);
         }
 
-        if (progress - lastProgress >= 0.1) {
-          lastProgress = progress;
-          callback.onProgress(progress);
-          Log.d(TAG, "📈 Download progress: " + String.format("%.1f%%", progress * 100) + " (" + receivedBytes + "/" + totalBytes + " bytes)");
+        progress.publish(receivedBytes, totalBytes);
+        if (totalBytes > 0) {
+          double fraction = (double) receivedBytes / totalBytes;
+          if (fraction - lastProgress >= 0.1) {
+            lastProgress = fraction;
+            Log.d(TAG, "📈 Download progress: " + String.format("%.1f%%", fraction * 100) + " (" + receivedBytes + "/" + totalBytes + " bytes)");
+          }
         }
       }
 
-      raf.close();
-      inputStream.close();
-
       Log.d(TAG, "✅ Download completed: " + receivedBytes + " bytes received (expected: " + totalBytes + ")");
+      if (totalBytes > 0 && receivedBytes < totalBytes) {
+        throw new IOException("Incomplete file download");
+      }
+      progress.finish(receivedBytes, totalBytes);
+    }
+  }
+
+  // Start of the returned range from "Content-Range: bytes start-end/total", -1 without a readable one
+  private static long getRangeStart(HttpURLConnection connection) {
+    String contentRange = connection.getHeaderField("Content-Range");
+    if (contentRange == null) return -1;
+    try {
+      int start = contentRange.indexOf(' ') + 1;
+      return Long.parseLong(contentRange.substring(start, contentRange.indexOf('-', start)).trim());
+    } catch (RuntimeException e) {
+      return -1;
+    }
+  }
 
-      // Validate download completion using known file size
-      if (receivedBytes < totalBytes) {
-        Log.w(TAG, "⚠️ Download appears incomplete: received " + receivedBytes + " of " + totalBytes + " bytes");
-        callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, "Incomplete file download");
-        return;
+  // Full file size from Content-Range or Content-Length, falling back to the size the API reported
+  private static long getTotalBytes(HttpURLConnection connection, long offset, long knownFileSize) {
+    String contentRange = connection.getHeaderField("Content-Range");
+    if (contentRange != null) {
+      int slash = contentRange.lastIndexOf('/');
+      try {
+        if (slash >= 0) return Long.parseLong(contentRange.substring(slash + 1).trim());
+      } catch (NumberFormatException ignored) {
+        // "*" when the server does not know the size
       }
-    } catch (IOException e) {
-      Log.e(TAG, "❌ IOException during download: " + e.getMessage());
-      callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, "IOException occurred: " + e.getMessage());
-      throw e;
-    } finally {
-      connection.disconnect();
     }
+    try {
+      return offset + Long.parseLong(connection.getHeaderField("Content-Length").trim());
+    } catch (RuntimeException e) {
+      // Chunked responses carry no length
+      return knownFileSize;
+    }
+  }
+
+  private static String getValidator(HttpURLConnection connection) {
+    String etag = connection.getHeaderField("ETag");
+    if (etag != null && !etag.isEmpty() && !etag.startsWith("W/")) return etag;
+    String lastModified = connection.getHeaderField("Last-Modified");
+    return lastModified != null ? lastModified : "";
+  }
+
+  private static boolean isEnoughSpaceAvailable(String directoryPath, long fileSize) {
+    return getAvailableBytes(directoryPath) >= fileSize;
+  }
+
+  private static long getAvailableBytes(String directoryPath) {
+    File directory = new File(directoryPath);
+    if (!directory.exists()) {
+      directory.mkdirs();
+    }
+    StatFs statFs = new StatFs(directory.getPath());
+    return (long) statFs.getAvailableBlocksLong() * statFs.getBlockSizeLong();
   }
 
+  private static File prepareForDownload(String downloadDirectory) throws IOException {
+    File downloadFolder = new File(downloadDirectory);
+    if (!downloadFolder.exists()) {
+      if (!downloadFolder.mkdirs()) {
+        throw new IOException("Failed to create download directory: " + downloadDirectory);
+      }
+    }
+    return new File(downloadFolder, StallionApiConstants.ZIP_FILE_NAME);
+  }
 
   private static HttpURLConnection setupConnection(
     String downloadUrl,
     String appToken,
     String sdkToken,
-    long offset
+    long offset,
+    String validator
   ) throws IOException {
     URL url = new URL(downloadUrl);
     HttpURLConnection connection = (HttpURLConnection) url.openConnection();
     connection.setRequestMethod("GET");
+    connection.setConnectTimeout(StallionApiConstants.DOWNLOAD_CONNECT_TIMEOUT_MS);
+    // A stalled transfer fails after this long without data instead of holding the download slot
+    connection.setReadTimeout(StallionApiConstants.DOWNLOAD_READ_TIMEOUT_MS);
 
     if (offset > 0) {
       connection.setRequestProperty("Range", "bytes=" + offset + "-");
+      // The server sends the whole file instead of a range if it changed since the partial download
+      if (!validator.isEmpty()) {
+        connection.setRequestProperty("If-Range", validator);
+      }
     }
 
     if(!appToken.isEmpty()) {
@@ -313,34 +295,67 @@ public class StallionFileDownloader {
     return connection;
   }
 
-  private static void validateAndUnzip(
-    File downloadedZip,
-    String destDirectory,
-    StallionDownloadCallback callback
-  ) {
-    try {
-      if (!isValidZip(downloadedZip)) {
-        callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, "Invalid ZIP file");
-        return;
-      }
-
-      StallionFileManager.unzipFile(downloadedZip.getAbsolutePath(), destDirectory);
+  private static File verifyZip(File downloadedZip) throws IOException {
+    if (!isValidZip(downloadedZip)) {
+      throw new IOException("Invalid ZIP file");
+    }
+    return downloadedZip;
+  }
 
-      File otaBundle = new File(destDirectory + StallionApiConstants.UNZIP_FOLDER_NAME + StallionApiConstants.ANDROID_BUNDLE_FILE_NAME);
-      if (otaBundle.exists()) {
-        callback.onSuccess(StallionApiConstants.DOWNLOAD_SUCCESS_MESSAGE);
+  private static String extract(File downloadedZip, String destDirectory, StallionFuture<String> future) throws IOException {
+    long streamingThreshold = StallionStateManager.getInstance().getStallionConfig().getStreamingInstallThresholdBytes();
+    // Files left by an earlier extraction would only take space next to the new ones
+    StallionFileManager.deleteFileOrFolderSilently(new File(destDirectory + StallionApiConstants.UNZIP_FOLDER_NAME));
+    boolean isStreaming = downloadedZip.length() >= streamingThreshold;
+    if (!isStreaming) {
+      long uncompressedSize = StallionFileManager.getUncompressedSize(downloadedZip.getAbsolutePath());
+      if (!isEnoughSpaceAvailable(destDirectory, uncompressedSize)) {
+        throw new IOException("Not enough space to extract the bundle, " + uncompressedSize + " bytes needed");
+      }
+    }
+    try {
+      if (isStreaming) {
+        Log.d(TAG, "📦 Large bundle, extracting in streaming mode: " + downloadedZip.length() + " bytes");
+        // Loading the central directory for the size would defeat streaming, the space is checked as entries are written
+        StallionFileManager.unzipFileStreaming(downloadedZip.getAbsolutePath(), destDirectory, getAvailableBytes(destDirectory), future);
       } else {
-        callback.onReject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, StallionApiConstants.CORRUPTED_FILE_ERROR);
+        StallionFileManager.unzipFile(downloadedZip.getAbsolutePath(), destDirectory, future);
       }
+    } catch (CancellationException e) {
+      throw e;
     } catch (Exception e) {
       String filesystemError = e.getMessage() != null ? e.getMessage() : "Unknown filesystem error";
-      callback.onReject(
-        StallionApiConstants.DOWNLOAD_ERROR_PREFIX,
-        StallionApiConstants.DOWNLOAD_FILESYSTEM_ERROR_MESSAGE + filesystemError
-      );
-    } finally {
-      StallionFileManager.deleteFileOrFolderSilently(downloadedZip);
+      throw new IOException(StallionApiConstants.DOWNLOAD_FILESYSTEM_ERROR_MESSAGE + filesystemError, e);
+    }
+
+    File otaBundle = new File(destDirectory + StallionApiConstants.UNZIP_FOLDER_NAME + StallionApiConstants.ANDROID_BUNDLE_FILE_NAME);
+    if (!otaBundle.exists()) {
+      throw new IOException(StallionApiConstants.CORRUPTED_FILE_ERROR);
     }
+    verifyBytecodeVersion(otaBundle, destDirectory);
+    try {
+      StallionIntegrityIndex.write(destDirectory);
+    } catch (IOException e) {
+      // Without an index boot falls back to checking that the bundle exists
+      Log.w(TAG, "Integrity index not written: " + e.getMessage());
+    }
+    return StallionApiConstants.DOWNLOAD_SUCCESS_MESSAGE;
+  }
+
+  // Rejects the release before it can be mounted when the runtime cannot load its bytecode
+  private static void verifyBytecodeVersion(File otaBundle, String destDirectory) throws IOException {
+    int runtimeVersion = StallionStateManager.getInstance().getStallionConfig().getRuntimeBytecodeVersion();
+    int releaseVersion = StallionBytecodeCheck.readBytecodeVersion(otaBundle);
+    if (!StallionBytecodeCheck.isCompatible(releaseVersion, runtimeVersion)) {
+      StallionFileManager.deleteFileOrFolderSilently(new File(destDirectory + StallionApiConstants.UNZIP_FOLDER_NAME));
+      throw new StallionBytecodeMismatchException(releaseVersion, runtimeVersion);
+    }
+  }
+
+  // Message for a failed download, without the error prefix
+  public static String describeError(Throwable error) {
+    if (error instanceof CancellationException) return "Download cancelled";
+    return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
   }
 
   private static boolean isValidZip(File file) throws IOException {
@@ -0,0 +1,186 @@
+package com.stallion.networkmanager;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Typed view of the update-meta response, parsed with a streaming reader.
+ * <p>
+ * Both response formats are accepted: the flat one ({ updateAvailable, releaseHash, downloadUrl,
+ * targetAppVersion, bundleSize, urgent }) and the original wrapped one ({ success, data: { appliedBundleData,
+ * newBundleData } }). Unknown fields are skipped without being materialized.
+ */
+public class StallionReleaseMeta {
+  public boolean hasAppliedBundleData;
+  public boolean isRolledBack;
+  public String appliedTargetAppVersion = "";
+
+  public boolean hasNewBundleData;
+  public String newReleaseUrl = "";
+  public String newReleaseHash = "";
+  public String newTargetAppVersion = "";
+  public long newBundleSize;
+  public boolean isUrgent;
+
+  public long nextCheckAfterSeconds;
+
+  public static StallionReleaseMeta parse(String body) throws IOException {
+    StallionReleaseMeta releaseMeta = new StallionReleaseMeta();
+    boolean updateAvailable = false;
+    boolean success = false;
+    boolean hasWrappedData = false;
+    FlatFields flat = new FlatFields();
+
+    try (JsonReader reader = new JsonReader(new StringReader(body))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "updateAvailable":
+            updateAvailable = nextBoolean(reader);
+            break;
+          case "downloadUrl":
+            flat.downloadUrl = nextString(reader);
+            break;
+          case "releaseHash":
+            flat.releaseHash = nextString(reader);
+            break;
+          case "targetAppVersion":
+            flat.targetAppVersion = nextString(reader);
+            break;
+          case "bundleSize":
+            flat.bundleSize = nextLong(reader);
+            break;
+          case "urgent":
+            flat.isUrgent = nextBoolean(reader);
+            break;
+          case "nextCheckAfterSeconds":
+            releaseMeta.nextCheckAfterSeconds = nextLong(reader);
+            break;
+          case "success":
+            success = nextBoolean(reader);
+            break;
+          case "data":
+            hasWrappedData = readWrappedData(reader, releaseMeta);
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+
+    if (updateAvailable) {
+      // The flat format carries no applied bundle data, so it never asks for a rollback
+      releaseMeta.hasAppliedBundleData = false;
+      releaseMeta.hasNewBundleData = true;
+      releaseMeta.newReleaseUrl = flat.downloadUrl;
+      releaseMeta.newReleaseHash = flat.releaseHash;
+      releaseMeta.newTargetAppVersion = flat.targetAppVersion;
+      releaseMeta.newBundleSize = flat.bundleSize;
+      releaseMeta.isUrgent = flat.isUrgent;
+    } else if (!success || !hasWrappedData) {
+      releaseMeta.hasAppliedBundleData = false;
+      releaseMeta.hasNewBundleData = false;
+    }
+    return releaseMeta;
+  }
+
+  private static final class FlatFields {
+    String downloadUrl = "";
+    String releaseHash = "";
+    String targetAppVersion = "";
+    long bundleSize;
+    boolean isUrgent;
+  }
+
+  private static boolean readWrappedData(JsonReader reader, StallionReleaseMeta releaseMeta) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return false;
+    }
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("appliedBundleData".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        releaseMeta.hasAppliedBundleData = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+          switch (reader.nextName()) {
+            case "isRolledBack":
+              releaseMeta.isRolledBack = nextBoolean(reader);
+              break;
+            case "targetAppVersion":
+              releaseMeta.appliedTargetAppVersion = nextString(reader);
+              break;
+            default:
+              reader.skipValue();
+          }
+        }
+        reader.endObject();
+      } else if ("newBundleData".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        releaseMeta.hasNewBundleData = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+          switch (reader.nextName()) {
+            case "downloadUrl":
+              releaseMeta.newReleaseUrl = nextString(reader);
+              break;
+            case "checksum":
+              releaseMeta.newReleaseHash = nextString(reader);
+              break;
+            case "targetAppVersion":
+              releaseMeta.newTargetAppVersion = nextString(reader);
+              break;
+            case "bundleSize":
+              releaseMeta.newBundleSize = nextLong(reader);
+              break;
+            case "urgent":
+              releaseMeta.isUrgent = nextBoolean(reader);
+              break;
+            default:
+              reader.skipValue();
+          }
+        }
+        reader.endObject();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return true;
+  }
+
+  // The readers below mirror the lenient opt* accessors of org.json: wrong types fall back to defaults
+
+  private static String nextString(JsonReader reader) throws IOException {
+    JsonToken token = reader.peek();
+    if (token == JsonToken.STRING || token == JsonToken.NUMBER) return reader.nextString();
+    if (token == JsonToken.BOOLEAN) return Boolean.toString(reader.nextBoolean());
+    reader.skipValue();
+    return "";
+  }
+
+  private static boolean nextBoolean(JsonReader reader) throws IOException {
+    JsonToken token = reader.peek();
+    if (token == JsonToken.BOOLEAN) return reader.nextBoolean();
+    if (token == JsonToken.STRING) return "true".equalsIgnoreCase(reader.nextString());
+    reader.skipValue();
+    return false;
+  }
+
+  private static long nextLong(JsonReader reader) throws IOException {
+    JsonToken token = reader.peek();
+    if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+      try {
+        return (long) Double.parseDouble(reader.nextString());
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    reader.skipValue();
+    return 0;
+  }
+}
@@ -8,6 +8,9 @@ import com.stallion.storage.StallionConfig;
 import com.stallion.storage.StallionConfigConstants;
 import com.stallion.storage.StallionMetaConstants;
 import com.stallion.storage.StallionStateManager;
+import com.stallion.utils.StallionBundlePrewarmer;
+import com.stallion.utils.StallionDownloadProgress;
+import com.stallion.utils.StallionFuture;
 
 import org.json.JSONObject;
 
@@ -22,41 +25,77 @@ public class StallionStageManager {
         && receivedHash != null
         && !receivedHash.isEmpty()
     ) {
+      StallionDownloadRegistry.InFlightDownload download = StallionDownloadRegistry.join(
+        StallionDownloadRegistry.Scope.STAGE,
+        receivedHash
+      );
+      if (download == null) {
+        promise.reject(
+          StallionApiConstants.DOWNLOAD_ERROR_PREFIX,
+          "Another stage bundle is downloading: "
+            + StallionDownloadRegistry.getInFlightHash(StallionDownloadRegistry.Scope.STAGE)
+        );
+        return;
+      }
+
+      // Every caller for the same hash gets its promise settled by the one download
+      download.result.whenComplete((successPayload, error) -> {
+        if (error != null) {
+          promise.reject(StallionApiConstants.DOWNLOAD_ERROR_PREFIX, StallionFileDownloader.describeError(error));
+        } else {
+          promise.resolve(successPayload);
+        }
+      });
+      if (!download.claim()) {
+        return;
+      }
+
       StallionConfig config = stallionStateManager.getStallionConfig();
       String downloadPath = config.getFilesDirectory()
         + StallionConfigConstants.STAGE_DIRECTORY
         + StallionConfigConstants.TEMP_FOLDER_SLOT;
-      long alreadyDownloaded = StallionDownloadCacheManager.getDownloadCache(config, receivedDownloadUrl, downloadPath);
 
-      emitDownloadStartedStage(receivedHash, alreadyDownloaded > 0);
+      download.progress.subscribe(progress -> emitDownloadProgressStage(receivedHash, progress));
+      download.result.whenComplete((successPayload, error) -> {
+        if (error instanceof StallionBytecodeMismatchException) {
+          StallionDownloadCacheManager.deleteDownloadCache(downloadPath);
+          emitBytecodeIncompatibleStage(receivedHash, (StallionBytecodeMismatchException) error);
+        } else if (error != null) {
+          emitDownloadErrorStage(receivedHash, StallionFileDownloader.describeError(error));
+        } else {
+          emitDownloadSuccessStage(receivedHash);
+        }
+      });
+
+      try {
+        long alreadyDownloaded = StallionDownloadCacheManager.getDownloadCache(
+          config,
+          StallionDownloadRegistry.Scope.STAGE,
+          receivedDownloadUrl,
+          downloadPath
+        );
 
-      StallionFileDownloader.downloadBundle(
-        receivedDownloadUrl,
-        downloadPath,
-        alreadyDownloaded,
-        new StallionDownloadCallback() {
-          @Override
-          public void onReject(String prefix, String error) {
-            promise.reject(prefix, error);
-            emitDownloadErrorStage(receivedHash, error);
-          }
+        emitDownloadStartedStage(receivedHash, alreadyDownloaded > 0);
 
-          @Override
-          public void onSuccess(String successPayload) {
+        download.result.completeWith(
+          StallionFileDownloader.downloadBundle(
+            receivedDownloadUrl,
+            downloadPath,
+            alreadyDownloaded,
+            0,
+            download.progress
+          ).thenCompose(successPayload -> {
             stallionStateManager.stallionMeta.setCurrentStageSlot(StallionMetaConstants.SlotStates.NEW_SLOT);
             stallionStateManager.stallionMeta.setStageTempHash(receivedHash);
             stallionStateManager.syncStallionMeta();
-            emitDownloadSuccessStage(receivedHash);
             StallionDownloadCacheManager.deleteDownloadCache(downloadPath);
-            promise.resolve(successPayload);
-          }
-
-          @Override
-          public void onProgress(double downloadFraction) {
-            emitDownloadProgressStage(receivedHash, downloadFraction);
-          }
-        }
-      );
+            StallionBundlePrewarmer.prewarmNextLaunchBundle();
+            return StallionFuture.completed(successPayload);
+          })
+        );
+      } catch (Exception e) {
+        download.result.fail(e);
+      }
     }
   }
 
@@ -71,15 +110,10 @@ public class StallionStageManager {
     );
   }
 
-  private static void emitDownloadProgressStage(String releaseHash, double newProgress) {
-    JSONObject successPayload = new JSONObject();
-    try {
-      successPayload.put("releaseHash", releaseHash);
-      successPayload.put("progress", String.valueOf(newProgress));
-    } catch (Exception ignored) { }
+  private static void emitDownloadProgressStage(String releaseHash, StallionDownloadProgress progress) {
     StallionEventManager.getInstance().sendEventWithoutCaching(
       StallionEventConstants.NativeStageEventTypes.DOWNLOAD_PROGRESS_STAGE.toString(),
-      successPayload
+      progress.toWritableMap(releaseHash)
     );
   }
 
@@ -96,6 +130,20 @@ public class StallionStageManager {
     );
   }
 
+  private static void emitBytecodeIncompatibleStage(String releaseHash, StallionBytecodeMismatchException mismatch) {
+    JSONObject mismatchPayload = new JSONObject();
+    try {
+      mismatchPayload.put("releaseHash", releaseHash);
+      mismatchPayload.put("releaseBytecodeVersion", mismatch.getReleaseVersion());
+      mismatchPayload.put("runtimeBytecodeVersion", mismatch.getRuntimeVersion());
+      mismatchPayload.put("meta", mismatch.getMessage());
+    } catch (Exception ignored) { }
+    StallionEventManager.getInstance().sendEvent(
+      StallionEventConstants.NativeStageEventTypes.BYTECODE_INCOMPATIBLE_STAGE.toString(),
+      mismatchPayload
+    );
+  }
+
   private static void emitDownloadErrorStage(String releaseHash, String error) {
     JSONObject errorPayload = new JSONObject();
     try {
@@ -6,145 +6,121 @@ import com.stallion.storage.StallionConfigConstants;
 import com.stallion.storage.StallionMetaConstants;
 import com.stallion.storage.StallionStateManager;
 import com.stallion.storage.StallionConfig;
+import com.stallion.utils.StallionApplyScheduler;
+import com.stallion.utils.StallionBundlePrewarmer;
+import com.stallion.utils.StallionDownloadProgress;
+import com.stallion.utils.StallionFuture;
 import com.stallion.utils.StallionSlotManager;
 import com.stallion.events.StallionEventConstants.NativeProdEventTypes;
 
 import org.json.JSONObject;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class StallionSyncHandler {
 
   private static final String TAG = "StallionSyncHandler";
-  private static final AtomicBoolean isSyncInProgress = new AtomicBoolean(false);
-  private static final AtomicBoolean isDownloadInProgress = new AtomicBoolean(false);
 
   public static void sync() {
-    // Ensure only one sync job runs at a time
-    if (!isSyncInProgress.compareAndSet(false, true)) {
-      return; // Exit if another job is already running
-    }
+    sync(false);
+  }
 
-    new Thread(() -> {
-      try {
-        // Fetch StallionStateManager and StallionConfig
-        StallionStateManager stateManager = StallionStateManager.getInstance();
-        StallionConfig config = stateManager.getStallionConfig();
-
-        // Use appVersion directly from StallionConfig
-        String appVersion = config.getAppVersion();
-        String projectId = config.getProjectId();
-        String environment = config.getEnvironment();
-        String appliedBundleHash = stateManager.stallionMeta.getActiveReleaseHash();
-
-        // Prepare payload for API call
-        JSONObject requestPayload = new JSONObject();
-        requestPayload.put("appVersion", appVersion);
-        requestPayload.put("platform", "android");
-        requestPayload.put("projectId", projectId);
-        requestPayload.put("currentEnvironment", environment);
-        requestPayload.put("appliedBundleHash", appliedBundleHash);
-
-        // Make API call using StallionApiManager
-        JSONObject releaseMeta = StallionApiManager.post(
-          StallionApiConstants.STALLION_API_BASE + StallionApiConstants.STALLION_INFO_API_PATH,
-          requestPayload.toString()
-        );
+  // A forced sync ignores the minimum sync interval and always revalidates with the server
+  public static void sync(boolean isForced) {
+    StallionSyncScheduler.getInstance().requestSync(isForced, null);
+  }
+
+  /**
+   * Starts a sync while React Native is still loading the bundle. A release found by it is
+   * queued and handed off to the download when the module mounts.
+   */
+  public static void startEarlySync() {
+    StallionSyncScheduler.getInstance().requestEarlySync();
+  }
+
+  /**
+   * Runs one sync on the calling thread. Returns the delay in ms the server asked to wait before
+   * the next check, 0 when it sent none.
+   */
+  static long performSync(boolean isForced) throws Exception {
+    // Fetch StallionStateManager and StallionConfig
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    StallionConfig config = stateManager.getStallionConfig();
+
+    // Use appVersion directly from StallionConfig
+    String appVersion = config.getAppVersion();
+    String projectId = config.getProjectId();
+    String environment = config.getEnvironment();
+    String appliedBundleHash = stateManager.stallionMeta.getActiveReleaseHash();
 
-        // Process API response
-        processReleaseMeta(releaseMeta, appVersion);
+    // Prepare payload for API call
+    JSONObject requestPayload = new JSONObject();
+    requestPayload.put("appVersion", appVersion);
+    requestPayload.put("platform", "android");
+    requestPayload.put("projectId", projectId);
+    requestPayload.put("currentEnvironment", environment);
+    requestPayload.put("appliedBundleHash", appliedBundleHash);
 
-      } catch (Exception e) {
-        emitSyncError(e);
-      } finally {
-        // Reset the flag to allow new jobs
-        isSyncInProgress.set(false);
+    String requestBody = requestPayload.toString();
+    String requestHash = StallionUpdateMetaCache.hashRequest(requestBody);
+
+    // Within the minimum sync interval the cached response for the same request is reused
+    if (!isForced && StallionUpdateMetaCache.isFresh(requestHash, config.getMinSyncIntervalMs())) {
+      StallionReleaseMeta cachedReleaseMeta = StallionUpdateMetaCache.getCachedResponse();
+      if (cachedReleaseMeta != null) {
+        processReleaseMeta(cachedReleaseMeta, appVersion);
+        return 0;
       }
-    }).start();
+    }
+
+    // Make API call using StallionApiManager, revalidating the cached response if there is one
+    StallionReleaseMeta cachedReleaseMeta = StallionUpdateMetaCache.getCachedResponse();
+    String etag = cachedReleaseMeta != null ? StallionUpdateMetaCache.getEtag(requestHash) : null;
+    StallionApiManager.ConditionalResponse response = StallionApiManager.postConditional(
+      StallionApiConstants.STALLION_API_BASE + StallionApiConstants.STALLION_INFO_API_PATH,
+      requestBody,
+      etag
+    );
+
+    StallionReleaseMeta releaseMeta;
+    if (response.isNotModified) {
+      releaseMeta = cachedReleaseMeta;
+      StallionUpdateMetaCache.markSynced();
+    } else {
+      releaseMeta = StallionReleaseMeta.parse(response.body);
+      StallionUpdateMetaCache.save(requestHash, response.etag, response.body);
+    }
+
+    // Process API response
+    processReleaseMeta(releaseMeta, appVersion);
+
+    return Math.max(response.retryAfterMs, releaseMeta.nextCheckAfterSeconds * 1000);
   }
-  private static void processReleaseMeta(JSONObject releaseMeta, String appVersion) {
+
+  private static void processReleaseMeta(StallionReleaseMeta releaseMeta, String appVersion) {
     Log.d(TAG, "🔄 Processing release meta for app version: " + appVersion);
-    
-    // Handle the current API response format from your server
-    // The server returns: { updateAvailable: true, releaseHash: "...", downloadUrl: "...", ... }
-    // instead of the expected: { success: true, data: { appliedBundleData: {...}, newBundleData: {...} } }
-    
-    boolean updateAvailable = releaseMeta.optBoolean("updateAvailable", false);
-    Log.d(TAG, "📦 Update available: " + updateAvailable);
-    
-    if (updateAvailable) {
-      // Convert current response format to expected format
-      JSONObject newBundleData = new JSONObject();
-      try {
-        // Map your server's fields to what the existing code expects
-        String downloadUrl = releaseMeta.optString("downloadUrl");
-        String releaseHash = releaseMeta.optString("releaseHash");
-        String targetAppVersion = releaseMeta.optString("targetAppVersion");
-        long bundleSize = releaseMeta.optLong("bundleSize", 0);
-        
-        Log.d(TAG, "🔗 Download URL: " + downloadUrl);
-        Log.d(TAG, "🔐 Release Hash: " + releaseHash);
-        Log.d(TAG, "🎯 Target App Version: " + targetAppVersion);
-        Log.d(TAG, "📏 Bundle Size: " + bundleSize + " bytes");
-        
-        newBundleData.put("downloadUrl", downloadUrl);
-        newBundleData.put("checksum", releaseHash); // Your server uses "releaseHash", code expects "checksum"
-        newBundleData.put("targetAppVersion", targetAppVersion);
-        newBundleData.put("bundleSize", bundleSize); // Pass bundle size from API
-        
-        // Create appliedBundleData with default values (since your server doesn't provide this)
-        JSONObject appliedBundleData = new JSONObject();
-        appliedBundleData.put("isRolledBack", false); // Default to not rolled back
-        appliedBundleData.put("targetAppVersion", appVersion);
-        
-        Log.d(TAG, "✅ Successfully adapted API response format");
-        
-        // Process using existing handlers
-        handleAppliedReleaseData(appliedBundleData, appVersion);
-        handleNewReleaseData(newBundleData);
-        
-      } catch (Exception e) {
-        // If there's an error creating the adapted response, emit sync error
-        Log.e(TAG, "❌ Failed to parse API response: " + e.getMessage());
-        emitSyncError(new Exception("Failed to parse API response: " + e.getMessage()));
-      }
+
+    if (releaseMeta.hasAppliedBundleData) {
+      handleAppliedReleaseData(releaseMeta.isRolledBack, releaseMeta.appliedTargetAppVersion, appVersion);
+    }
+    if (releaseMeta.hasNewBundleData) {
+      Log.d(TAG, "🎯 Target App Version: " + releaseMeta.newTargetAppVersion);
+      handleNewReleaseData(
+        releaseMeta.newReleaseUrl,
+        releaseMeta.newReleaseHash,
+        releaseMeta.newBundleSize,
+        releaseMeta.isUrgent
+      );
     } else {
-      Log.d(TAG, "📋 No update available, trying fallback format");
-      // Fallback: try the original format for backwards compatibility
-      if (releaseMeta.optBoolean("success")) {
-        JSONObject data = releaseMeta.optJSONObject("data");
-        if (data == null) {
-          Log.d(TAG, "⚠️ No data object in response");
-          return;
-        }
-
-        handleAppliedReleaseData(data.optJSONObject("appliedBundleData"), appVersion);
-        handleNewReleaseData(data.optJSONObject("newBundleData"));
-      } else {
-        Log.d(TAG, "⚠️ No success field or updateAvailable field in response");
-      }
+      Log.d(TAG, "📋 No update available");
     }
   }
 
-  private static void handleAppliedReleaseData(JSONObject appliedData, String appVersion) {
-    if (appliedData == null) return;
-
-    boolean isRolledBack = appliedData.optBoolean("isRolledBack");
-    String targetAppVersion = appliedData.optString("targetAppVersion");
+  private static void handleAppliedReleaseData(boolean isRolledBack, String targetAppVersion, String appVersion) {
     if (isRolledBack && appVersion.equals(targetAppVersion)) {
       StallionSlotManager.rollbackProd(false, "");
     }
   }
 
-  private static void handleNewReleaseData(JSONObject newReleaseData) {
-    if (newReleaseData == null) {
-      Log.d(TAG, "⚠️ No new release data provided");
-      return;
-    }
-
-    String newReleaseUrl = newReleaseData.optString("downloadUrl");
-    String newReleaseHash = newReleaseData.optString("checksum");
-    long bundleSize = newReleaseData.optLong("bundleSize", 0);
-
+  private static void handleNewReleaseData(String newReleaseUrl, String newReleaseHash, long bundleSize, boolean isUrgent) {
     Log.d(TAG, "📋 Handling new release data:");
     Log.d(TAG, "   URL: " + newReleaseUrl);
     Log.d(TAG, "   Hash: " + newReleaseHash);
@@ -158,115 +134,141 @@ public class StallionSyncHandler {
         !newReleaseHash.isEmpty()
         && !newReleaseUrl.isEmpty()
         && !newReleaseHash.equals(lastRolledBackHash)
+        && !StallionDownloadJobQueue.isRejected(newReleaseHash)
     ) {
+      StallionDownloadJobQueue.enqueue(newReleaseHash, newReleaseUrl, bundleSize, isUrgent);
       if(stateManager.getIsMounted()) {
         Log.d(TAG, "🚀 App is mounted, starting download immediately");
-        downloadNewRelease(newReleaseHash, newReleaseUrl, bundleSize);
+        resumeDownloads(false);
       } else {
-        Log.d(TAG, "⏳ App not mounted, setting pending release");
-        stateManager.setPendingRelease(newReleaseUrl, newReleaseHash);
+        Log.d(TAG, "⏳ App not mounted, download queued until mount");
       }
     } else {
-      Log.d(TAG, "⏭️ Skipping download - hash empty, URL empty, or already rolled back");
+      Log.d(TAG, "⏭️ Skipping download - hash empty, URL empty, already rolled back or rejected");
+    }
+  }
+
+  /**
+   * Starts the next queued download job. On launch, jobs parked after a failure in a previous
+   * process are retried too.
+   */
+  public static void resumeDownloads(boolean isLaunch) {
+    if (isLaunch) {
+      StallionDownloadJobQueue.requeueFailed();
+    }
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    StallionDownloadJobQueue.Job job;
+    while ((job = StallionDownloadJobQueue.peek()) != null) {
+      if (isJobObsolete(job, stateManager)) {
+        Log.d(TAG, "⏭️ Dropping obsolete download job: " + job.releaseHash);
+        StallionDownloadJobQueue.remove(job.releaseHash);
+        continue;
+      }
+      downloadNewRelease(job.releaseHash, job.downloadUrl, job.bundleSize);
+      return;
     }
   }
 
+  // Jobs from another app version, for rolled back releases or for releases already on disk are dropped
+  private static boolean isJobObsolete(StallionDownloadJobQueue.Job job, StallionStateManager stateManager) {
+    String releaseHash = job.releaseHash;
+    return releaseHash.isEmpty()
+      || !job.appVersion.equals(stateManager.getStallionConfig().getAppVersion())
+      || releaseHash.equals(stateManager.stallionMeta.getLastRolledBackHash())
+      || StallionDownloadJobQueue.isRejected(releaseHash)
+      || releaseHash.equals(stateManager.stallionMeta.getProdTempHash())
+      || releaseHash.equals(stateManager.stallionMeta.getProdNewHash())
+      || releaseHash.equals(stateManager.stallionMeta.getProdStableHash());
+  }
+
   public static void downloadNewRelease(String newReleaseHash, String newReleaseUrl, long bundleSize) {
-    // Ensure only one download job runs at a time
-    if (!isDownloadInProgress.compareAndSet(false, true)) {
-      return; // Exit if another job is already running
+    // Only one prod release downloads at a time, a job left queued is picked up when it finishes
+    StallionDownloadRegistry.InFlightDownload download = StallionDownloadRegistry.join(
+      StallionDownloadRegistry.Scope.PROD,
+      newReleaseHash
+    );
+    if (download == null) {
+      Log.d(TAG, "⏳ Download of " + newReleaseHash + " queued behind "
+        + StallionDownloadRegistry.getInFlightHash(StallionDownloadRegistry.Scope.PROD));
+      return;
+    }
+    if (!download.claim()) {
+      return;
     }
+
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    StallionConfig config = stateManager.getStallionConfig();
+    String downloadPath = config.getFilesDirectory()
+      + StallionConfigConstants.PROD_DIRECTORY
+      + StallionConfigConstants.TEMP_FOLDER_SLOT;
+    // Use the downloadUrl directly - it's already a complete presigned S3 URL
+    Log.d(TAG, "🔗 Using complete presigned URL directly: " + newReleaseUrl);
+    Log.d(TAG, "📏 Bundle size from API: " + bundleSize + " bytes");
+
+    download.progress.subscribe(progress -> emitDownloadProgress(newReleaseHash, progress));
+    download.result.whenComplete((successPayload, error) -> {
+      if (error instanceof StallionBytecodeMismatchException) {
+        StallionDownloadCacheManager.deleteDownloadCache(downloadPath);
+        StallionDownloadJobQueue.reject(newReleaseHash);
+        emitBytecodeIncompatible(newReleaseHash, (StallionBytecodeMismatchException) error);
+        resumeDownloads(false);
+        return;
+      }
+      if (error != null) {
+        StallionDownloadJobQueue.markFailed(newReleaseHash, StallionDownloadCacheManager.readMetaFile(downloadPath));
+        emitDownloadError(
+          newReleaseHash,
+          StallionApiConstants.DOWNLOAD_ERROR_PREFIX + StallionFileDownloader.describeError(error)
+        );
+        // The failed job is parked until the next launch, the jobs behind it still run
+        resumeDownloads(false);
+        return;
+      }
+      emitDownloadSuccess(newReleaseHash);
+      resumeDownloads(false);
+    });
+
     try {
-      StallionStateManager stateManager = StallionStateManager.getInstance();
-      StallionConfig config = stateManager.getStallionConfig();
-      String downloadPath = config.getFilesDirectory()
-        + StallionConfigConstants.PROD_DIRECTORY
-        + StallionConfigConstants.TEMP_FOLDER_SLOT;
-      String projectId = config.getProjectId();
-      // Use the downloadUrl directly - it's already a complete presigned S3 URL
-      String downloadUrl = newReleaseUrl;
-      Log.d(TAG, "🔗 Using complete presigned URL directly: " + downloadUrl);
-      Log.d(TAG, "📏 Bundle size from API: " + bundleSize + " bytes");
-
-      long alreadyDownloaded = StallionDownloadCacheManager.getDownloadCache(config, downloadUrl, downloadPath);
+      // Keyed by release hash, a fresh presigned URL for the same release keeps the partial download
+      long alreadyDownloaded = StallionDownloadCacheManager.getDownloadCache(
+        config,
+        StallionDownloadRegistry.Scope.PROD,
+        newReleaseHash,
+        downloadPath
+      );
+      StallionDownloadJobQueue.markStarted(newReleaseHash);
 
       emitDownloadStarted(newReleaseHash, alreadyDownloaded > 0);
 
-      // Use bundle size if available, otherwise fallback to original method
-      if (bundleSize > 0) {
-        Log.d(TAG, "📦 Using known bundle size for download");
-        StallionFileDownloader.downloadBundleWithSize(
-          downloadUrl,
+      download.result.completeWith(
+        StallionFileDownloader.downloadBundle(
+          newReleaseUrl,
           downloadPath,
           alreadyDownloaded,
           bundleSize,
-        new StallionDownloadCallback() {
-          @Override
-          public void onReject(String prefix, String error) {
-            isDownloadInProgress.set(false);
-            emitDownloadError(newReleaseHash, prefix + error);
-          }
-
-          @Override
-          public void onSuccess(String successPayload) {
-            isDownloadInProgress.set(false);
-            stateManager.stallionMeta.setCurrentProdSlot(StallionMetaConstants.SlotStates.NEW_SLOT);
-            stateManager.stallionMeta.setProdTempHash(newReleaseHash);
-            String currentProdNewHash = stateManager.stallionMeta.getProdNewHash();
-            if(currentProdNewHash != null && !currentProdNewHash.isEmpty()) {
-              StallionSlotManager.stabilizeProd();
-            }
-            stateManager.syncStallionMeta();
-            StallionDownloadCacheManager.deleteDownloadCache(downloadPath);
-            emitDownloadSuccess(newReleaseHash);
-          }
-
-          @Override
-          public void onProgress(double downloadFraction) {
-            // Optional: Handle progress updates
-          }
-        }
+          download.progress
+        ).thenCompose(successPayload -> installProdRelease(newReleaseHash, downloadPath, successPayload))
       );
-      } else {
-        Log.d(TAG, "📦 No bundle size available, using original download method with HEAD request");
-        StallionFileDownloader.downloadBundle(
-          downloadUrl,
-          downloadPath,
-          alreadyDownloaded,
-          new StallionDownloadCallback() {
-            @Override
-            public void onReject(String prefix, String error) {
-              isDownloadInProgress.set(false);
-              emitDownloadError(newReleaseHash, prefix + error);
-            }
-
-            @Override
-            public void onSuccess(String successPayload) {
-              isDownloadInProgress.set(false);
-              stateManager.stallionMeta.setCurrentProdSlot(StallionMetaConstants.SlotStates.NEW_SLOT);
-              stateManager.stallionMeta.setProdTempHash(newReleaseHash);
-              String currentProdNewHash = stateManager.stallionMeta.getProdNewHash();
-              if(currentProdNewHash != null && !currentProdNewHash.isEmpty()) {
-                StallionSlotManager.stabilizeProd();
-              }
-              stateManager.syncStallionMeta();
-              StallionDownloadCacheManager.deleteDownloadCache(downloadPath);
-              emitDownloadSuccess(newReleaseHash);
-            }
-
-            @Override
-            public void onProgress(double downloadFraction) {
-              // Optional: Handle progress updates
-            }
-          }
-        );
-      }
-    } catch (Exception ignored) {
-      isDownloadInProgress.set(false);
+    } catch (Exception e) {
+      download.result.fail(e);
     }
   }
 
-  private static void emitSyncError(Exception e) {
+  // Mount step of the prod pipeline, the downloaded slot becomes the new release on next launch
+  private static StallionFuture<String> installProdRelease(String releaseHash, String downloadPath, String successPayload) {
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    stateManager.stallionMeta.setCurrentProdSlot(StallionMetaConstants.SlotStates.NEW_SLOT);
+    stateManager.stallionMeta.setProdTempHash(releaseHash);
+    stateManager.syncStallionMeta();
+    StallionDownloadCacheManager.deleteDownloadCache(downloadPath);
+    StallionDownloadJobQueue.Job job = StallionDownloadJobQueue.get(releaseHash);
+    StallionDownloadJobQueue.remove(releaseHash);
+    StallionBundlePrewarmer.prewarmNextLaunchBundle();
+    StallionApplyScheduler.onReleaseInstalled(job != null && job.isUrgent);
+    return StallionFuture.completed(successPayload);
+  }
+
+  static void emitSyncError(Exception e) {
     JSONObject syncErrorPayload = new JSONObject();
     try {
       String syncErrorString = e.getMessage() != null ? e.getMessage() : "Unknown error";
@@ -290,6 +292,27 @@ public class StallionSyncHandler {
     );
   }
 
+  private static void emitBytecodeIncompatible(String releaseHash, StallionBytecodeMismatchException mismatch) {
+    JSONObject mismatchPayload = new JSONObject();
+    try {
+      mismatchPayload.put("releaseHash", releaseHash);
+      mismatchPayload.put("releaseBytecodeVersion", mismatch.getReleaseVersion());
+      mismatchPayload.put("runtimeBytecodeVersion", mismatch.getRuntimeVersion());
+      mismatchPayload.put("meta", mismatch.getMessage());
+    } catch (Exception ignored) { }
+    StallionEventManager.getInstance().sendEvent(
+      NativeProdEventTypes.BYTECODE_INCOMPATIBLE_PROD.toString(),
+      mismatchPayload
+    );
+  }
+
+  private static void emitDownloadProgress(String releaseHash, StallionDownloadProgress progress) {
+    StallionEventManager.getInstance().sendEventWithoutCaching(
+      NativeProdEventTypes.DOWNLOAD_PROGRESS_PROD.toString(),
+      progress.toWritableMap(releaseHash)
+    );
+  }
+
   private static void emitDownloadSuccess(String releaseHash) {
     JSONObject successPayload = new JSONObject();
     try {
@@ -0,0 +1,156 @@
+package com.stallion.networkmanager;
+
+import com.stallion.storage.StallionStateManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs update-meta syncs on a single owned thread.
+ * <p>
+ * Only one sync is in flight at a time and callers arriving while it runs share its result.
+ * Background syncs start after a random jitter so a fleet resuming together does not hit the API
+ * in the same instant. The jitter window is a tenth of AirshipMinSyncIntervalSeconds, between 3
+ * seconds and 5 minutes, so apps that sync rarely also spread their syncs further. Syncs back off
+ * exponentially after failures and wait out any Retry-After or next-check hint sent by the server. A forced sync skips the jitter and the client backoff but
+ * still honours the server hint.
+ * <p>
+ * An early sync started during app launch runs without jitter and stands in for the first
+ * foreground sync, so the resume that follows React Native init does not repeat the request.
+ */
+public class StallionSyncScheduler {
+  private static final long MIN_JITTER_MS = 3 * 1000;
+  private static final long MAX_JITTER_MS = 5 * 60 * 1000;
+  private static final int JITTER_INTERVAL_FRACTION = 10;
+  private static final long INITIAL_BACKOFF_MS = 30 * 1000;
+  private static final long MAX_BACKOFF_MS = 60 * 60 * 1000;
+  private static final String NEXT_SYNC_AT_KEY = "StallionNextSyncAt";
+  private static final String SERVER_HOLD_UNTIL_KEY = "StallionSyncHoldUntil";
+
+  public interface SyncListener {
+    void onSyncComplete(boolean isSuccess);
+  }
+
+  private static volatile StallionSyncScheduler instance;
+
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "StallionSync");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final Random random = new Random();
+  // Listeners of the sync in flight, null while idle
+  private List<SyncListener> inFlightListeners;
+  private int consecutiveFailures;
+  private boolean isEarlySyncInFlight;
+  private boolean hasUnclaimedEarlySync;
+
+  public static StallionSyncScheduler getInstance() {
+    if (instance == null) {
+      synchronized (StallionSyncScheduler.class) {
+        if (instance == null) {
+          instance = new StallionSyncScheduler();
+        }
+      }
+    }
+    return instance;
+  }
+
+  public void requestEarlySync() {
+    startSync(false, true, null);
+  }
+
+  public void requestSync(boolean isForced, SyncListener listener) {
+    startSync(isForced, false, listener);
+  }
+
+  private void startSync(boolean isForced, boolean isEarly, SyncListener listener) {
+    synchronized (this) {
+      if (inFlightListeners != null) {
+        if (listener != null) inFlightListeners.add(listener);
+        return;
+      }
+      if (!isForced && hasUnclaimedEarlySync) {
+        hasUnclaimedEarlySync = false;
+        if (listener != null) listener.onSyncComplete(true);
+        return;
+      }
+      long now = System.currentTimeMillis();
+      long notBefore = isForced ? readTime(SERVER_HOLD_UNTIL_KEY) : readTime(NEXT_SYNC_AT_KEY);
+      if (now < notBefore) {
+        if (listener != null) listener.onSyncComplete(false);
+        return;
+      }
+      inFlightListeners = new ArrayList<>();
+      if (listener != null) inFlightListeners.add(listener);
+      isEarlySyncInFlight = isEarly;
+    }
+    long delayMs = isForced || isEarly ? 0 : (long) (random.nextDouble() * getJitterWindowMs());
+    executor.schedule(() -> runSync(isForced), delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  private void runSync(boolean isForced) {
+    boolean isSuccess = false;
+    long now = System.currentTimeMillis();
+    long serverHoldMs = 0;
+    long backoffMs = 0;
+    try {
+      serverHoldMs = StallionSyncHandler.performSync(isForced);
+      consecutiveFailures = 0;
+      isSuccess = true;
+    } catch (StallionApiException e) {
+      serverHoldMs = e.getRetryAfterMs();
+      backoffMs = nextBackoffMs();
+      StallionSyncHandler.emitSyncError(e);
+    } catch (Exception e) {
+      backoffMs = nextBackoffMs();
+      StallionSyncHandler.emitSyncError(e);
+    }
+
+    long serverHoldUntil = serverHoldMs > 0 ? now + serverHoldMs : 0;
+    long nextSyncAt = Math.max(serverHoldUntil, backoffMs > 0 ? now + backoffMs : 0);
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    stateManager.setString(NEXT_SYNC_AT_KEY, Long.toString(nextSyncAt));
+    stateManager.setString(SERVER_HOLD_UNTIL_KEY, Long.toString(serverHoldUntil));
+
+    List<SyncListener> listeners;
+    synchronized (this) {
+      listeners = inFlightListeners;
+      inFlightListeners = null;
+      hasUnclaimedEarlySync = isEarlySyncInFlight && isSuccess;
+      isEarlySyncInFlight = false;
+    }
+    for (SyncListener listener : listeners) {
+      try {
+        listener.onSyncComplete(isSuccess);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  private static long getJitterWindowMs() {
+    long minSyncIntervalMs = StallionStateManager.getInstance().getStallionConfig().getMinSyncIntervalMs();
+    return Math.max(MIN_JITTER_MS, Math.min(MAX_JITTER_MS, minSyncIntervalMs / JITTER_INTERVAL_FRACTION));
+  }
+
+  // Equal jitter: half the exponential delay is fixed, the other half random
+  private long nextBackoffMs() {
+    consecutiveFailures++;
+    int exponent = Math.min(consecutiveFailures - 1, 20);
+    long ceiling = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << exponent);
+    return ceiling / 2 + (long) (random.nextDouble() * (ceiling / 2));
+  }
+
+  private static long readTime(String key) {
+    try {
+      return Long.parseLong(StallionStateManager.getInstance().getString(key, "0"));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.stallion.networkmanager;
+
+import com.stallion.storage.StallionStateManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the last update-meta response with its ETag and the hash of the request that produced
+ * it, so a sync can revalidate with If-None-Match or be skipped while the response is fresh.
+ */
+public class StallionUpdateMetaCache {
+  private static final String RESPONSE_KEY = "StallionUpdateMetaResponse";
+  private static final String ETAG_KEY = "StallionUpdateMetaEtag";
+  private static final String REQUEST_HASH_KEY = "StallionUpdateMetaRequestHash";
+  private static final String LAST_SYNC_AT_KEY = "StallionLastSyncAt";
+
+  public static String hashRequest(String requestBody) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(requestBody.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    } catch (Exception e) {
+      return Integer.toHexString(requestBody.hashCode());
+    }
+  }
+
+  // True when the same request succeeded less than minSyncIntervalMs ago
+  public static boolean isFresh(String requestHash, long minSyncIntervalMs) {
+    if (minSyncIntervalMs <= 0) return false;
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    if (!requestHash.equals(stateManager.getString(REQUEST_HASH_KEY, ""))) return false;
+    long lastSyncAt = parseLong(stateManager.getString(LAST_SYNC_AT_KEY, "0"));
+    long elapsed = System.currentTimeMillis() - lastSyncAt;
+    return elapsed >= 0 && elapsed < minSyncIntervalMs;
+  }
+
+  // The validator is only usable for the exact request it was returned for
+  public static String getEtag(String requestHash) {
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    if (!requestHash.equals(stateManager.getString(REQUEST_HASH_KEY, ""))) return null;
+    String etag = stateManager.getString(ETAG_KEY, "");
+    return etag.isEmpty() ? null : etag;
+  }
+
+  public static StallionReleaseMeta getCachedResponse() {
+    String cachedBody = StallionStateManager.getInstance().getString(RESPONSE_KEY, "");
+    if (cachedBody.isEmpty()) return null;
+    try {
+      return StallionReleaseMeta.parse(cachedBody);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  public static void save(String requestHash, String etag, String responseBody) {
+    Map<String, String> values = new HashMap<>();
+    values.put(RESPONSE_KEY, responseBody);
+    values.put(ETAG_KEY, etag != null ? etag : "");
+    values.put(REQUEST_HASH_KEY, requestHash);
+    values.put(LAST_SYNC_AT_KEY, Long.toString(System.currentTimeMillis()));
+    StallionStateManager.getInstance().setStrings(values);
+  }
+
+  public static void markSynced() {
+    StallionStateManager.getInstance().setString(LAST_SYNC_AT_KEY, Long.toString(System.currentTimeMillis()));
+  }
+
+  private static long parseLong(String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -3,15 +3,24 @@ package com.stallion.storage;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
+import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.provider.Settings;
 
+import com.stallion.utils.StallionBytecodeCheck;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
 
 public class StallionConfig {
+  private static final int DEFAULT_STREAMING_INSTALL_THRESHOLD_MB = 100;
+  private static final int DEFAULT_HOT_APPLY_BACKGROUND_SECONDS = 300;
+  private static final int DEFAULT_PROGRESS_EVENT_INTERVAL_MS = 500;
+
   private String uid;
   private final String projectId;
   private final String environment;
@@ -21,6 +30,27 @@ public class StallionConfig {
   private final SharedPreferences sharedPreferences;
   private final String filesDirectory;
   private String lastDownloadingUrl;
+  private String lastDownloadingProdHash;
+  private final Context context;
+  private final AssetManager assetManager;
+  // Optional settings are looked up on first use, so the boot path only pays for the ones it reads.
+  // Each resolves to the same value on every thread, a racing first read only repeats the lookup.
+  private volatile Boolean nativeEventUploadEnabled;
+  private volatile Integer maxQueuedEvents;
+  private volatile String eventSamplingRates;
+  private volatile Long minSyncIntervalMs;
+  private volatile Boolean earlySyncEnabled;
+  private volatile Long streamingInstallThresholdBytes;
+  private volatile Boolean bundlePrewarmEnabled;
+  private volatile Boolean inProcessReloadEnabled;
+  private volatile String hotApplyPolicy;
+  private volatile Long hotApplyBackgroundMs;
+  private volatile Long diskQuotaBytes;
+  private volatile Long foregroundInstallIoBytesPerSecond;
+  private volatile Long foregroundDownloadBytesPerSecond;
+  private volatile Long backgroundDownloadBytesPerSecond;
+  private volatile Long progressEventIntervalMs;
+  private Integer runtimeBytecodeVersion;
 
   public StallionConfig(Context context, SharedPreferences sharedPreferences) {
     this.sharedPreferences = sharedPreferences;
@@ -74,16 +104,41 @@ public class StallionConfig {
     this.appVersion = fetchAppVersion(context);
     this.filesDirectory = context.getFilesDir().getAbsolutePath();
     this.lastDownloadingUrl = sharedPreferences.getString(StallionConfigConstants.LAST_DOWNLOADING_URL_IDENTIFIER, "");
+    this.lastDownloadingProdHash = sharedPreferences.getString(StallionConfigConstants.LAST_DOWNLOADING_PROD_HASH_IDENTIFIER, "");
+
+    // Held for the lazy lookups, the application context so a React context is not leaked
+    Context applicationContext = context.getApplicationContext();
+    this.context = applicationContext != null ? applicationContext : context;
+    this.assetManager = context.getAssets();
+  }
+
+  private static int parseIntOrDefault(String value, int defaultValue) {
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  private String getOptionalString(String identifier) {
+    int resId = context.getResources().getIdentifier(identifier, "string", context.getPackageName());
+    return resId != 0 ? context.getString(resId) : "";
   }
 
-  public String getLastDownloadingUrl() {
-    return this.lastDownloadingUrl;
+  // Each scope downloads into its own temp slot, so each keeps its own record of what is in it
+  public String getLastDownloadingKey(boolean isProd) {
+    return isProd ? this.lastDownloadingProdHash : this.lastDownloadingUrl;
   }
 
-  public void setLastDownloadingUrl(String newUrl) {
-    this.lastDownloadingUrl = newUrl;
+  public void setLastDownloadingKey(boolean isProd, String newKey) {
     SharedPreferences.Editor editor = sharedPreferences.edit();
-    editor.putString(StallionConfigConstants.LAST_DOWNLOADING_URL_IDENTIFIER, newUrl);
+    if (isProd) {
+      this.lastDownloadingProdHash = newKey;
+      editor.putString(StallionConfigConstants.LAST_DOWNLOADING_PROD_HASH_IDENTIFIER, newKey);
+    } else {
+      this.lastDownloadingUrl = newKey;
+      editor.putString(StallionConfigConstants.LAST_DOWNLOADING_URL_IDENTIFIER, newKey);
+    }
     editor.apply();
   }
 
@@ -131,6 +186,170 @@ public class StallionConfig {
 
   public String getFilesDirectory() { return this.filesDirectory; }
 
+  public boolean isNativeEventUploadEnabled() {
+    if (this.nativeEventUploadEnabled == null) {
+      this.nativeEventUploadEnabled = Boolean.parseBoolean(
+        getOptionalString(StallionConfigConstants.NATIVE_EVENT_UPLOAD_IDENTIFIER)
+      );
+    }
+    return this.nativeEventUploadEnabled;
+  }
+
+  public int getMaxQueuedEvents() {
+    if (this.maxQueuedEvents == null) {
+      this.maxQueuedEvents = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.MAX_QUEUED_EVENTS_IDENTIFIER),
+        0
+      );
+    }
+    return this.maxQueuedEvents;
+  }
+
+  public String getEventSamplingRates() {
+    if (this.eventSamplingRates == null) {
+      this.eventSamplingRates = getOptionalString(StallionConfigConstants.EVENT_SAMPLING_RATES_IDENTIFIER);
+    }
+    return this.eventSamplingRates;
+  }
+
+  public long getMinSyncIntervalMs() {
+    if (this.minSyncIntervalMs == null) {
+      this.minSyncIntervalMs = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.MIN_SYNC_INTERVAL_IDENTIFIER),
+        0
+      ) * 1000L;
+    }
+    return this.minSyncIntervalMs;
+  }
+
+  public boolean isEarlySyncEnabled() {
+    if (this.earlySyncEnabled == null) {
+      this.earlySyncEnabled = Boolean.parseBoolean(
+        getOptionalString(StallionConfigConstants.EARLY_SYNC_IDENTIFIER)
+      );
+    }
+    return this.earlySyncEnabled;
+  }
+
+  public long getStreamingInstallThresholdBytes() {
+    if (this.streamingInstallThresholdBytes == null) {
+      this.streamingInstallThresholdBytes = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.STREAMING_INSTALL_THRESHOLD_IDENTIFIER),
+        DEFAULT_STREAMING_INSTALL_THRESHOLD_MB
+      ) * 1024L * 1024L;
+    }
+    return this.streamingInstallThresholdBytes;
+  }
+
+  public boolean isBundlePrewarmEnabled() {
+    if (this.bundlePrewarmEnabled == null) {
+      this.bundlePrewarmEnabled = Boolean.parseBoolean(
+        getOptionalString(StallionConfigConstants.BUNDLE_PREWARM_IDENTIFIER)
+      );
+    }
+    return this.bundlePrewarmEnabled;
+  }
+
+  public boolean isInProcessReloadEnabled() {
+    if (this.inProcessReloadEnabled == null) {
+      this.inProcessReloadEnabled = Boolean.parseBoolean(
+        getOptionalString(StallionConfigConstants.IN_PROCESS_RELOAD_IDENTIFIER)
+      );
+    }
+    return this.inProcessReloadEnabled;
+  }
+
+  public String getHotApplyPolicy() {
+    if (this.hotApplyPolicy == null) {
+      this.hotApplyPolicy = getOptionalString(StallionConfigConstants.HOT_APPLY_POLICY_IDENTIFIER)
+        .trim()
+        .toLowerCase();
+    }
+    return this.hotApplyPolicy;
+  }
+
+  public long getDiskQuotaBytes() {
+    if (this.diskQuotaBytes == null) {
+      this.diskQuotaBytes = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.DISK_QUOTA_IDENTIFIER),
+        0
+      ) * 1024L * 1024L;
+    }
+    return this.diskQuotaBytes;
+  }
+
+  public long getForegroundInstallIoBytesPerSecond() {
+    if (this.foregroundInstallIoBytesPerSecond == null) {
+      this.foregroundInstallIoBytesPerSecond = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.FOREGROUND_INSTALL_IO_IDENTIFIER),
+        0
+      ) * 1024L;
+    }
+    return this.foregroundInstallIoBytesPerSecond;
+  }
+
+  public long getForegroundDownloadBytesPerSecond() {
+    if (this.foregroundDownloadBytesPerSecond == null) {
+      this.foregroundDownloadBytesPerSecond = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.FOREGROUND_DOWNLOAD_RATE_IDENTIFIER),
+        0
+      ) * 1024L;
+    }
+    return this.foregroundDownloadBytesPerSecond;
+  }
+
+  public long getBackgroundDownloadBytesPerSecond() {
+    if (this.backgroundDownloadBytesPerSecond == null) {
+      this.backgroundDownloadBytesPerSecond = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.BACKGROUND_DOWNLOAD_RATE_IDENTIFIER),
+        0
+      ) * 1024L;
+    }
+    return this.backgroundDownloadBytesPerSecond;
+  }
+
+  public long getProgressEventIntervalMs() {
+    if (this.progressEventIntervalMs == null) {
+      this.progressEventIntervalMs = (long) parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.PROGRESS_EVENT_INTERVAL_IDENTIFIER),
+        DEFAULT_PROGRESS_EVENT_INTERVAL_MS
+      );
+    }
+    return this.progressEventIntervalMs;
+  }
+
+  /**
+   * Bytecode version the runtime loads, from AirshipHermesBytecodeVersion when set. Otherwise read
+   * once from the bundle embedded in the APK, which hermesc compiled for this exact runtime.
+   */
+  public synchronized int getRuntimeBytecodeVersion() {
+    if (this.runtimeBytecodeVersion == null) {
+      this.runtimeBytecodeVersion = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.HERMES_BYTECODE_VERSION_IDENTIFIER),
+        StallionBytecodeCheck.UNKNOWN
+      );
+    }
+    if (this.runtimeBytecodeVersion == StallionBytecodeCheck.UNKNOWN && this.assetManager != null) {
+      String embeddedBundle = StallionConfigConstants.ANDROID_BUNDLE_FILE_NAME.substring(1);
+      try (InputStream in = this.assetManager.open(embeddedBundle)) {
+        this.runtimeBytecodeVersion = StallionBytecodeCheck.readBytecodeVersion(in);
+      } catch (IOException ignored) {
+        // No embedded bundle, as in debug builds, releases are then not checked
+      }
+    }
+    return this.runtimeBytecodeVersion;
+  }
+
+  public long getHotApplyBackgroundMs() {
+    if (this.hotApplyBackgroundMs == null) {
+      this.hotApplyBackgroundMs = parseIntOrDefault(
+        getOptionalString(StallionConfigConstants.HOT_APPLY_BACKGROUND_SECONDS_IDENTIFIER),
+        DEFAULT_HOT_APPLY_BACKGROUND_SECONDS
+      ) * 1000L;
+    }
+    return this.hotApplyBackgroundMs;
+  }
+
   public JSONObject toJSON() {
     JSONObject configJson = new JSONObject();
     try {
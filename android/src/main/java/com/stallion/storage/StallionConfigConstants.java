@@ -11,9 +11,27 @@ public class StallionConfigConstants {
   public static final String UNIQUE_ID_IDENTIFIER = "stallionDeviceId";
   public static final String API_KEY_IDENTIFIER = "x-sdk-access-token";
   public static final String LAST_DOWNLOADING_URL_IDENTIFIER = "StallionLastDownloadingUrl";
+  public static final String LAST_DOWNLOADING_PROD_HASH_IDENTIFIER = "StallionLastDownloadingProdHash";
+  public static final String NATIVE_EVENT_UPLOAD_IDENTIFIER = "AirshipNativeEventUpload";
+  public static final String MAX_QUEUED_EVENTS_IDENTIFIER = "AirshipMaxQueuedEvents";
+  public static final String EVENT_SAMPLING_RATES_IDENTIFIER = "AirshipEventSamplingRates";
+  public static final String MIN_SYNC_INTERVAL_IDENTIFIER = "AirshipMinSyncIntervalSeconds";
+  public static final String EARLY_SYNC_IDENTIFIER = "AirshipEarlySync";
+  public static final String STREAMING_INSTALL_THRESHOLD_IDENTIFIER = "AirshipStreamingInstallThresholdMb";
+  public static final String BUNDLE_PREWARM_IDENTIFIER = "AirshipBundlePrewarm";
+  public static final String IN_PROCESS_RELOAD_IDENTIFIER = "AirshipInProcessReload";
+  public static final String HOT_APPLY_POLICY_IDENTIFIER = "AirshipHotApply";
+  public static final String HOT_APPLY_BACKGROUND_SECONDS_IDENTIFIER = "AirshipHotApplyBackgroundSeconds";
+  public static final String HERMES_BYTECODE_VERSION_IDENTIFIER = "AirshipHermesBytecodeVersion";
+  public static final String DISK_QUOTA_IDENTIFIER = "AirshipDiskQuotaMb";
+  public static final String FOREGROUND_INSTALL_IO_IDENTIFIER = "AirshipForegroundInstallIoKbps";
+  public static final String FOREGROUND_DOWNLOAD_RATE_IDENTIFIER = "AirshipForegroundDownloadKbps";
+  public static final String BACKGROUND_DOWNLOAD_RATE_IDENTIFIER = "AirshipBackgroundDownloadKbps";
+  public static final String PROGRESS_EVENT_INTERVAL_IDENTIFIER = "AirshipProgressEventIntervalMs";
 
   public static final String PROD_DIRECTORY = "/StallionProd";
   public static final String STAGE_DIRECTORY = "/StallionStage";
+  public static final String EVENTS_DIRECTORY = "/StallionEvents";
   public static final String TEMP_FOLDER_SLOT = "/temp";
   public static final String NEW_FOLDER_SLOT = "/StallionNew";
   public static final String STABLE_FOLDER_SLOT = "/StallionStable";
@@ -0,0 +1,174 @@
+package com.stallion.storage;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.stallion.networkmanager.StallionDownloadJobQueue;
+import com.stallion.networkmanager.StallionDownloadRegistry;
+import com.stallion.utils.StallionFileManager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Accounts for every Stallion folder under the files directory and keeps them within the
+ * AirshipDiskQuotaMb budget.
+ * <p>
+ * Stale folders, temp slots nothing is downloading into and slots no hash points at, are always
+ * removed. Over budget, eviction continues with partial downloads, then stage slots while the app
+ * runs prod, then the prod stable slot when the new slot is live. The slot that launches next and
+ * anything being downloaded are never touched.
+ */
+public class StallionDiskQuotaManager {
+  private static final String TAG = "StallionDiskQuota";
+
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, "StallionDiskQuota");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public static void enforceInBackground() {
+    executor.execute(() -> {
+      try {
+        enforce();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    });
+  }
+
+  public static synchronized void enforce() {
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    StallionMeta stallionMeta = stateManager.stallionMeta;
+    long budgetBytes = stateManager.getStallionConfig().getDiskQuotaBytes();
+    boolean isChanged = false;
+
+    // Stale: nothing will ever load or resume these
+    if (isEmpty(stallionMeta.getProdTempHash()) && StallionDownloadJobQueue.isEmpty()) {
+      isChanged |= evictIfIdle(StallionDownloadRegistry.Scope.PROD, prodSlot(StallionConfigConstants.TEMP_FOLDER_SLOT));
+    }
+    if (isEmpty(stallionMeta.getProdNewHash())) {
+      isChanged |= evict(prodSlot(StallionConfigConstants.NEW_FOLDER_SLOT));
+    }
+    if (isEmpty(stallionMeta.getProdStableHash())) {
+      isChanged |= evict(prodSlot(StallionConfigConstants.STABLE_FOLDER_SLOT));
+    }
+    if (isEmpty(stallionMeta.getStageTempHash())) {
+      isChanged |= evictIfIdle(StallionDownloadRegistry.Scope.STAGE, stageSlot(StallionConfigConstants.TEMP_FOLDER_SLOT));
+    }
+    if (isEmpty(stallionMeta.getStageNewHash())) {
+      isChanged |= evict(stageSlot(StallionConfigConstants.NEW_FOLDER_SLOT));
+    }
+
+    if (budgetBytes > 0 && getTotalBytes() > budgetBytes) {
+      // Partial prod download, it restarts from zero when the job is retried
+      if (isEmpty(stallionMeta.getProdTempHash())) {
+        isChanged |= evictIfIdle(StallionDownloadRegistry.Scope.PROD, prodSlot(StallionConfigConstants.TEMP_FOLDER_SLOT));
+      }
+    }
+    if (
+      budgetBytes > 0
+        && getTotalBytes() > budgetBytes
+        && stallionMeta.getSwitchState() != StallionMetaConstants.SwitchState.STAGE
+    ) {
+      isChanged |= StallionDownloadRegistry.runIfIdle(StallionDownloadRegistry.Scope.STAGE, () -> {
+        boolean isEvicted = false;
+        if (evict(stageSlot(StallionConfigConstants.TEMP_FOLDER_SLOT))) {
+          stallionMeta.setStageTempHash("");
+          isEvicted = true;
+        }
+        if (evict(stageSlot(StallionConfigConstants.NEW_FOLDER_SLOT))) {
+          stallionMeta.setStageNewHash("");
+          stallionMeta.setCurrentStageSlot(StallionMetaConstants.SlotStates.DEFAULT_SLOT);
+          isEvicted = true;
+        }
+        return isEvicted;
+      });
+    }
+    if (
+      budgetBytes > 0
+        && getTotalBytes() > budgetBytes
+        && stallionMeta.getCurrentProdSlot() == StallionMetaConstants.SlotStates.NEW_SLOT
+        && !isEmpty(stallionMeta.getProdNewHash())
+    ) {
+      // Only the rollback target, a rollback from the new slot then falls back to the default bundle
+      if (evict(prodSlot(StallionConfigConstants.STABLE_FOLDER_SLOT))) {
+        stallionMeta.setProdStableHash("");
+        isChanged = true;
+      }
+    }
+
+    if (isChanged) {
+      stateManager.syncStallionMeta();
+      Log.d(TAG, "🧹 Stallion storage now " + getTotalBytes() + " bytes, budget " + budgetBytes);
+    }
+  }
+
+  public static JSONObject getUsage() throws JSONException {
+    JSONObject usage = new JSONObject();
+    usage.put("prodTempBytes", sizeOf(prodSlot(StallionConfigConstants.TEMP_FOLDER_SLOT)));
+    usage.put("prodNewBytes", sizeOf(prodSlot(StallionConfigConstants.NEW_FOLDER_SLOT)));
+    usage.put("prodStableBytes", sizeOf(prodSlot(StallionConfigConstants.STABLE_FOLDER_SLOT)));
+    usage.put("stageTempBytes", sizeOf(stageSlot(StallionConfigConstants.TEMP_FOLDER_SLOT)));
+    usage.put("stageNewBytes", sizeOf(stageSlot(StallionConfigConstants.NEW_FOLDER_SLOT)));
+    usage.put("eventsBytes", sizeOf(new File(getBaseFolderPath() + StallionConfigConstants.EVENTS_DIRECTORY)));
+    usage.put("totalBytes", getTotalBytes());
+    usage.put("budgetBytes", StallionStateManager.getInstance().getStallionConfig().getDiskQuotaBytes());
+    return usage;
+  }
+
+  private static long getTotalBytes() {
+    String baseFolderPath = getBaseFolderPath();
+    return sizeOf(new File(baseFolderPath + StallionConfigConstants.PROD_DIRECTORY))
+      + sizeOf(new File(baseFolderPath + StallionConfigConstants.STAGE_DIRECTORY))
+      + sizeOf(new File(baseFolderPath + StallionConfigConstants.EVENTS_DIRECTORY));
+  }
+
+  private static boolean evict(File folder) {
+    if (!folder.exists()) return false;
+    long freedBytes = sizeOf(folder);
+    StallionFileManager.deleteFileOrFolderSilently(folder);
+    Log.d(TAG, "🗑️ Evicted " + folder.getName() + ", " + freedBytes + " bytes");
+    return true;
+  }
+
+  private static long sizeOf(File file) {
+    if (!file.isDirectory()) return file.length();
+    File[] children = file.listFiles();
+    if (children == null) return 0;
+    long total = 0;
+    for (File child : children) {
+      total += sizeOf(child);
+    }
+    return total;
+  }
+
+  // Checked and evicted under the download registry lock, so a download starting meanwhile keeps its slot
+  private static boolean evictIfIdle(StallionDownloadRegistry.Scope scope, File folder) {
+    return StallionDownloadRegistry.runIfIdle(scope, () -> evict(folder));
+  }
+
+  private static boolean isEmpty(String hash) {
+    return hash == null || hash.isEmpty();
+  }
+
+  private static File prodSlot(String slotFolder) {
+    return new File(getBaseFolderPath() + StallionConfigConstants.PROD_DIRECTORY + slotFolder);
+  }
+
+  private static File stageSlot(String slotFolder) {
+    return new File(getBaseFolderPath() + StallionConfigConstants.STAGE_DIRECTORY + slotFolder);
+  }
+
+  private static String getBaseFolderPath() {
+    return StallionStateManager.getInstance().getStallionConfig().getFilesDirectory();
+  }
+}
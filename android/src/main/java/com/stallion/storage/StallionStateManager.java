@@ -8,6 +8,8 @@ import com.stallion.utils.StallionExceptionHandler;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.Map;
+
 public class StallionStateManager {
 
   private static final String PREF_NAME = "stallion_state_manager";
@@ -18,17 +20,13 @@ public class StallionStateManager {
   private final StallionConfig stallionConfig;
   public StallionMeta stallionMeta;
   private boolean isMounted;
-  private String pendingReleaseUrl;
-  private String pendingReleaseHash;
-
+  private volatile boolean isInForeground;
 
   private StallionStateManager(Context context) {
     this.sharedPreferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
     this.stallionConfig = new StallionConfig(context, this.sharedPreferences);
     this.stallionMeta = this.fetchStallionMeta();
     this.isMounted = false;
-    this.pendingReleaseUrl = "";
-    this.pendingReleaseHash = "";
   }
 
   public static synchronized void init(Context context) {
@@ -84,6 +82,14 @@ public class StallionStateManager {
     return this.isMounted;
   }
 
+  public void setIsInForeground(boolean isInForeground) {
+    this.isInForeground = isInForeground;
+  }
+
+  public boolean getIsInForeground() {
+    return this.isInForeground;
+  }
+
   public String getString(String key, String defaultString) {
     return sharedPreferences.getString(key, defaultString != null ? defaultString : "");
   }
@@ -94,20 +100,21 @@ public class StallionStateManager {
     editor.commit();
   }
 
-  public StallionConfig getStallionConfig() {
-    return this.stallionConfig;
-  }
-
-  public void setPendingRelease(String pendingReleaseUrl, String pendingReleaseHash) {
-    this.pendingReleaseUrl = pendingReleaseUrl;
-    this.pendingReleaseHash = pendingReleaseHash;
+  public void setStrings(Map<String, String> values) {
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      editor.putString(entry.getKey(), entry.getValue());
+    }
+    editor.commit();
   }
 
-  public String getPendingReleaseUrl() {
-    return this.pendingReleaseUrl;
+  public void removeKey(String key) {
+    SharedPreferences.Editor editor = sharedPreferences.edit();
+    editor.remove(key);
+    editor.commit();
   }
 
-  public String getPendingReleaseHash() {
-    return this.pendingReleaseHash;
+  public StallionConfig getStallionConfig() {
+    return this.stallionConfig;
   }
 }
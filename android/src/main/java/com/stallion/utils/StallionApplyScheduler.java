@@ -0,0 +1,100 @@
+package com.stallion.utils;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.UiThreadUtil;
+import com.stallion.storage.StallionConfig;
+import com.stallion.storage.StallionMeta;
+import com.stallion.storage.StallionMetaConstants;
+import com.stallion.storage.StallionStateManager;
+
+/**
+ * Decides when a downloaded prod release is applied without waiting for a cold start, following
+ * the AirshipHotApply policy. StallionModule reports the host lifecycle, the sync handler reports
+ * installs.
+ * <p>
+ * Releases are only ever applied with an in-process reload and only while the app is in the
+ * foreground. When that is not possible the release stays in the temp slot for the next launch.
+ */
+public class StallionApplyScheduler {
+  private static final String TAG = "StallionApplyScheduler";
+  public static final String POLICY_RESUME = "resume";
+  public static final String POLICY_BACKGROUND = "background";
+
+  private static Context appContext;
+  private static long backgroundedAt = -1;
+  private static boolean hasUrgentRelease;
+
+  public static synchronized void attach(Context context) {
+    appContext = context.getApplicationContext();
+  }
+
+  public static void onForeground() {
+    boolean shouldApply;
+    synchronized (StallionApplyScheduler.class) {
+      String policy = getPolicy();
+      long backgroundMs = backgroundedAt >= 0 ? SystemClock.elapsedRealtime() - backgroundedAt : 0;
+      backgroundedAt = -1;
+      shouldApply = hasUrgentRelease
+        || POLICY_RESUME.equals(policy)
+        || (POLICY_BACKGROUND.equals(policy) && backgroundMs >= getConfig().getHotApplyBackgroundMs());
+    }
+    if (shouldApply) applyIfStaged();
+  }
+
+  public static synchronized void onBackground() {
+    backgroundedAt = SystemClock.elapsedRealtime();
+  }
+
+  // Called once a prod release is in the temp slot
+  public static void onReleaseInstalled(boolean isUrgent) {
+    synchronized (StallionApplyScheduler.class) {
+      if (!isUrgent || !isEnabled()) return;
+      hasUrgentRelease = true;
+      if (!isInForeground()) return;
+    }
+    // Installs finish on a download thread, lifecycle callbacks come on the UI thread
+    UiThreadUtil.runOnUiThread(StallionApplyScheduler::applyIfStaged);
+  }
+
+  private static void applyIfStaged() {
+    Context context;
+    synchronized (StallionApplyScheduler.class) {
+      context = appContext;
+      if (context == null || !isInForeground() || !isEnabled() || !hasStagedRelease()) return;
+      hasUrgentRelease = false;
+    }
+    Log.d(TAG, "🚀 Applying downloaded release in process");
+    if (!StallionReloader.reloadInProcess(context)) {
+      Log.d(TAG, "In-process reload unavailable, release applies on next launch");
+    }
+  }
+
+  private static boolean hasStagedRelease() {
+    StallionMeta stallionMeta = StallionStateManager.getInstance().stallionMeta;
+    String prodTempHash = stallionMeta.getProdTempHash();
+    return stallionMeta.getSwitchState() == StallionMetaConstants.SwitchState.PROD
+      && prodTempHash != null
+      && !prodTempHash.isEmpty();
+  }
+
+  // StallionModule sets the flag before reporting the lifecycle change here
+  private static boolean isInForeground() {
+    return StallionStateManager.getInstance().getIsInForeground();
+  }
+
+  private static boolean isEnabled() {
+    String policy = getPolicy();
+    return POLICY_RESUME.equals(policy) || POLICY_BACKGROUND.equals(policy);
+  }
+
+  private static String getPolicy() {
+    return getConfig().getHotApplyPolicy();
+  }
+
+  private static StallionConfig getConfig() {
+    return StallionStateManager.getInstance().getStallionConfig();
+  }
+}
@@ -0,0 +1,69 @@
+package com.stallion.utils;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.stallion.storage.StallionConfigConstants;
+import com.stallion.storage.StallionStateManager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads the bundle the next launch will load once, sequentially, on a background thread so its
+ * pages are in the page cache when React Native opens it. Runs after a release is installed and
+ * when the app goes to the background, which often precedes the process being restarted.
+ */
+public class StallionBundlePrewarmer {
+  private static final String TAG = "StallionBundlePrewarmer";
+  private static final int READ_BUFFER_SIZE = 256 * 1024;
+  // The same file is not read again this soon, pausing repeatedly should not keep hitting storage
+  private static final long REWARM_INTERVAL_MS = 5 * 60 * 1000;
+
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, "StallionBundlePrewarm");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static String lastWarmedKey;
+  private static long lastWarmedAt;
+
+  public static void prewarmNextLaunchBundle() {
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    if (!stateManager.getStallionConfig().isBundlePrewarmEnabled()) return;
+    File slot = StallionSlotManager.getNextLaunchSlot();
+    if (slot != null) {
+      File bundle = new File(slot, StallionConfigConstants.UNZIP_FOLDER_NAME + StallionConfigConstants.ANDROID_BUNDLE_FILE_NAME);
+      executor.execute(() -> warm(bundle));
+    }
+  }
+
+  private static void warm(File bundle) {
+    if (!bundle.isFile()) return;
+    String key = bundle.getAbsolutePath() + '|' + bundle.length() + '|' + bundle.lastModified();
+    long now = SystemClock.elapsedRealtime();
+    if (key.equals(lastWarmedKey) && now - lastWarmedAt < REWARM_INTERVAL_MS) return;
+
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    long bytesRead = 0;
+    try (FileInputStream in = new FileInputStream(bundle)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        bytesRead += read;
+      }
+      lastWarmedKey = key;
+      lastWarmedAt = now;
+      Log.d(TAG, "🔥 Prewarmed " + bytesRead + " bytes in " + (SystemClock.elapsedRealtime() - now) + " ms");
+    } catch (IOException e) {
+      Log.w(TAG, "Prewarm failed: " + e.getMessage());
+    }
+  }
+}
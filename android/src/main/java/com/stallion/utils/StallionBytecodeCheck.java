@@ -0,0 +1,53 @@
+package com.stallion.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the Hermes bytecode (HBC) version from a bundle header. Hermes only runs bytecode of the
+ * exact version it was built with, and JSC cannot run bytecode at all, so a release compiled by a
+ * different hermesc crashes on its first boot.
+ */
+public class StallionBytecodeCheck {
+  // Bundle is plain JavaScript, which every runtime can load
+  public static final int NOT_BYTECODE = 0;
+  // Runtime version could not be determined, releases are not checked
+  public static final int UNKNOWN = -1;
+
+  private static final long HBC_MAGIC = 0x1F1903C103BC1FC6L;
+  private static final int HEADER_SIZE = 12;
+
+  public static int readBytecodeVersion(File bundle) throws IOException {
+    try (InputStream in = new FileInputStream(bundle)) {
+      return readBytecodeVersion(in);
+    }
+  }
+
+  // Header is the little endian 8 byte magic followed by the 4 byte version
+  public static int readBytecodeVersion(InputStream in) throws IOException {
+    byte[] header = new byte[HEADER_SIZE];
+    int offset = 0;
+    int read;
+    while (offset < HEADER_SIZE && (read = in.read(header, offset, HEADER_SIZE - offset)) != -1) {
+      offset += read;
+    }
+    if (offset < HEADER_SIZE) return NOT_BYTECODE;
+
+    long magic = 0;
+    for (int i = 7; i >= 0; i--) {
+      magic = (magic << 8) | (header[i] & 0xff);
+    }
+    if (magic != HBC_MAGIC) return NOT_BYTECODE;
+    return (header[8] & 0xff)
+      | (header[9] & 0xff) << 8
+      | (header[10] & 0xff) << 16
+      | (header[11] & 0xff) << 24;
+  }
+
+  public static boolean isCompatible(int releaseVersion, int runtimeVersion) {
+    if (runtimeVersion == UNKNOWN || releaseVersion == NOT_BYTECODE) return true;
+    return releaseVersion == runtimeVersion;
+  }
+}
@@ -0,0 +1,24 @@
+package com.stallion.utils;
+
+/**
+ * Monotonic millisecond clock shared by install timeouts and the install I/O throttle, so time
+ * held back by the throttle is measured on the same clock the timeouts use. Tests replace the
+ * source to control time without sleeping.
+ */
+public class StallionClock {
+  interface Source {
+    long elapsedMs();
+  }
+
+  private static final Source SYSTEM = () -> System.nanoTime() / 1000000;
+  private static volatile Source source = SYSTEM;
+
+  public static long elapsedMs() {
+    return source.elapsedMs();
+  }
+
+  // Passing null restores the system clock
+  static void setSource(Source newSource) {
+    source = newSource != null ? newSource : SYSTEM;
+  }
+}
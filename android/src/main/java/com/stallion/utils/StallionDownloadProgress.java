@@ -0,0 +1,59 @@
+package com.stallion.utils;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * One progress sample of a download. Throughputs are in bytes per second, the average is an
+ * exponentially weighted moving average over the samples. totalBytes, fraction and etaMs are
+ * -1 while unknown, and null in the map sent to JS.
+ */
+public class StallionDownloadProgress {
+  public final long receivedBytes;
+  public final long totalBytes;
+  public final double fraction;
+  public final double bytesPerSecond;
+  public final double averageBytesPerSecond;
+  public final long etaMs;
+
+  StallionDownloadProgress(
+    long receivedBytes,
+    long totalBytes,
+    double bytesPerSecond,
+    double averageBytesPerSecond
+  ) {
+    this.receivedBytes = receivedBytes;
+    this.totalBytes = totalBytes;
+    this.fraction = totalBytes > 0 ? Math.min(1, (double) receivedBytes / totalBytes) : -1;
+    this.bytesPerSecond = bytesPerSecond;
+    this.averageBytesPerSecond = averageBytesPerSecond;
+    this.etaMs = totalBytes > 0 && averageBytesPerSecond > 0
+      ? (long) (Math.max(0, totalBytes - receivedBytes) * 1000 / averageBytesPerSecond)
+      : -1;
+  }
+
+  public boolean isComplete() {
+    return totalBytes > 0 && receivedBytes >= totalBytes;
+  }
+
+  // Numbers stay numbers on the JS side, no string round trip per sample
+  public WritableMap toWritableMap(String releaseHash) {
+    WritableMap map = Arguments.createMap();
+    map.putString("releaseHash", releaseHash);
+    putKnown(map, "progress", fraction);
+    map.putDouble("receivedBytes", receivedBytes);
+    putKnown(map, "totalBytes", totalBytes);
+    map.putDouble("bytesPerSecond", bytesPerSecond);
+    map.putDouble("averageBytesPerSecond", averageBytesPerSecond);
+    putKnown(map, "etaMs", etaMs);
+    return map;
+  }
+
+  private static void putKnown(WritableMap map, String key, double value) {
+    if (value < 0) {
+      map.putNull(key);
+    } else {
+      map.putDouble(key, value);
+    }
+  }
+}
@@ -53,7 +53,8 @@ public class StallionExceptionHandler {
       syncErrorPayload.put("releaseHash", releaseHash);
       syncErrorPayload.put("isAutoRollback", Boolean.toString(isAutoRollback));
     } catch (Exception ignored) { }
-    StallionEventManager.getInstance().sendEvent(
+    // The process is about to die, persist synchronously instead of on the background writer
+    StallionEventManager.getInstance().sendEventSync(
       isProd ?
         StallionEventConstants.NativeProdEventTypes.EXCEPTION_PROD.toString()
         : StallionEventConstants.NativeStageEventTypes.EXCEPTION_STAGE.toString(),
@@ -71,6 +72,7 @@ public class StallionExceptionHandler {
     // Perform rollback if auto-rollback is enabled
     if (isAutoRollback) {
       StallionSlotManager.rollbackProd(true, stackTraceString);
+      StallionEventManager.getInstance().persistPendingEventsSync();
     }
 
     continueExceptionFlow();
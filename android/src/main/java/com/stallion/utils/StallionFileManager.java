@@ -2,6 +2,7 @@ package com.stallion.utils;
 
 import android.os.Build;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -11,13 +12,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.Enumeration;
+import java.util.concurrent.CancellationException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 public class StallionFileManager {
 
   // Constants
   private static final int BUFFER_SIZE = 4096;
+  private static final int STREAMING_BUFFER_SIZE = 64 * 1024;
   private static final String CHARSET_UTF_8 = "UTF-8";
   private static final String FILE_NOT_FOUND_ERROR = "File does not exist: ";
   private static final String SECURITY_EXCEPTION_MESSAGE = "Zip Path Traversal Vulnerability: ";
@@ -27,16 +31,85 @@ public class StallionFileManager {
    *
    * @param zipFilePath    The path to the ZIP file.
    * @param destDirectory  The destination directory where the contents will be extracted.
+   * @param job            Checked between entries, extraction stops once it is cancelled.
    */
-  public static void unzipFile(String zipFilePath, String destDirectory) {
+  public static void unzipFile(String zipFilePath, String destDirectory, StallionFuture<?> job) {
     validateFileExists(zipFilePath);
     try (ZipFile zipFile = openZipFile(zipFilePath)) {
-      extractZipEntries(zipFile, destDirectory);
+      extractZipEntries(zipFile, destDirectory, job);
     } catch (IOException e) {
       throw new RuntimeException("Error unzipping file: " + e.getMessage(), e);
     }
   }
 
+  /**
+   * Unzips a ZIP file by streaming its entries one at a time through a single fixed buffer.
+   * Unlike {@link ZipFile} the central directory is never loaded, so heap use stays flat however
+   * large the archive is. Used for bundles above the streaming install threshold. Without the
+   * central directory the total size is not known upfront, so written bytes are counted against
+   * maxBytes as entries are extracted.
+   *
+   * @param zipFilePath    The path to the ZIP file.
+   * @param destDirectory  The destination directory where the contents will be extracted.
+   * @param maxBytes       Space available for the extracted files, extraction fails past it.
+   * @param job            Checked between entries, extraction stops once it is cancelled.
+   */
+  public static void unzipFileStreaming(String zipFilePath, String destDirectory, long maxBytes, StallionFuture<?> job) {
+    validateFileExists(zipFilePath);
+    byte[] buffer = new byte[STREAMING_BUFFER_SIZE];
+    try (ZipInputStream zipInputStream = new ZipInputStream(
+      new BufferedInputStream(new FileInputStream(zipFilePath), STREAMING_BUFFER_SIZE)
+    )) {
+      long writtenBytes = 0;
+      ZipEntry entry;
+      while ((entry = zipInputStream.getNextEntry()) != null) {
+        throwIfCancelled(job);
+        if (!entry.isDirectory()) {
+          // The local header carries the size unless the entry was written with a data descriptor
+          if (entry.getSize() > 0) {
+            checkSpace(writtenBytes + entry.getSize(), maxBytes);
+          }
+          File outputFile = new File(destDirectory, entry.getName());
+          validateZipEntryPath(outputFile, destDirectory);
+          createParentDirectory(outputFile);
+          // The output is written in buffer sized chunks already, a second buffer would only add heap
+          try (OutputStream out = new FileOutputStream(outputFile)) {
+            int bytesRead;
+            while ((bytesRead = zipInputStream.read(buffer)) != -1) {
+              writtenBytes += bytesRead;
+              checkSpace(writtenBytes, maxBytes);
+              StallionIoThrottle.acquire(bytesRead);
+              out.write(buffer, 0, bytesRead);
+            }
+          }
+          StallionIoThrottle.onEntryDone();
+        }
+        zipInputStream.closeEntry();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Error unzipping file: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Sums the uncompressed sizes recorded in the ZIP central directory, the disk space extraction
+   * will actually take.
+   *
+   * @param zipFilePath The path to the ZIP file.
+   * @return Total uncompressed size in bytes.
+   */
+  public static long getUncompressedSize(String zipFilePath) throws IOException {
+    validateFileExists(zipFilePath);
+    long total = 0;
+    try (ZipFile zipFile = openZipFile(zipFilePath)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        total += Math.max(0, entries.nextElement().getSize());
+      }
+    }
+    return total;
+  }
+
   private static void validateFileExists(String filePath) {
     File file = new File(filePath);
     if (!file.exists()) {
@@ -52,10 +125,12 @@ public class StallionFileManager {
     }
   }
 
-  private static void extractZipEntries(ZipFile zipFile, String destDirectory) throws IOException {
+  private static void extractZipEntries(ZipFile zipFile, String destDirectory, StallionFuture<?> job) throws IOException {
     Enumeration<? extends ZipEntry> entries = zipFile.entries();
     while (entries.hasMoreElements()) {
+      throwIfCancelled(job);
       extractZipEntry(entries.nextElement(), destDirectory, zipFile);
+      StallionIoThrottle.onEntryDone();
     }
   }
 
@@ -68,7 +143,19 @@ public class StallionFileManager {
 
     try (InputStream in = zipFile.getInputStream(entry);
          BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
-      copy(in, out);
+      copyPaced(in, out);
+    }
+  }
+
+  private static void checkSpace(long neededBytes, long maxBytes) throws IOException {
+    if (neededBytes > maxBytes) {
+      throw new IOException("Not enough space to extract the bundle, " + neededBytes + " bytes needed");
+    }
+  }
+
+  private static void throwIfCancelled(StallionFuture<?> job) {
+    if (job.isCancelled()) {
+      throw new CancellationException("Extraction cancelled");
     }
   }
 
@@ -98,6 +185,16 @@ public class StallionFileManager {
     return total;
   }
 
+  // Install side copy, throttled unlike the plain copy that also runs on the boot path
+  private static void copyPaced(InputStream from, OutputStream to) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int bytesRead;
+    while ((bytesRead = from.read(buffer)) != -1) {
+      StallionIoThrottle.acquire(bytesRead);
+      to.write(buffer, 0, bytesRead);
+    }
+  }
+
   /**
    * Deletes a file or directory silently. If it's a directory, all its contents are deleted recursively.
    *
@@ -201,5 +298,7 @@ public class StallionFileManager {
     } catch (IOException e) {
       throw new RuntimeException("Failed to copy file: " + e.getMessage(), e);
     }
+    // Kept so the copy still matches the integrity index copied along with it
+    destination.setLastModified(source.lastModified());
   }
 }
@@ -0,0 +1,256 @@
+package com.stallion.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Minimal listenable future for the download and install pipeline.
+ * <p>
+ * CompletableFuture needs API 24, so this covers the parts the SDK uses: completion listeners,
+ * chaining steps with {@link #thenCompose}, per-task timeouts and cancellation that travels
+ * upstream to the step still running. Listeners run on the thread that completes the future.
+ */
+public class StallionFuture<T> {
+
+  public interface Listener<T> {
+    // error is null on success, a CancellationException when the future was cancelled
+    void onComplete(T value, Throwable error);
+  }
+
+  public interface Step<T, R> {
+    StallionFuture<R> apply(T value) throws Exception;
+  }
+
+  public interface Task<T> {
+    // Long running tasks should poll future.isCancelled() and stop early
+    T run(StallionFuture<T> future) throws Exception;
+  }
+
+  // Time a task has spent running, minus the time it was held back
+  private interface ActiveTime {
+    long elapsedMs();
+  }
+
+  private static final int PENDING = 0;
+  private static final int SUCCEEDED = 1;
+  private static final int FAILED = 2;
+  private static final int CANCELLED = 3;
+
+  private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "StallionFutureTimeout");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private int state = PENDING;
+  private T value;
+  private Throwable error;
+  private List<Listener<T>> listeners = new ArrayList<>();
+  private List<Runnable> cancelHooks = new ArrayList<>();
+
+  public static <T> StallionFuture<T> completed(T value) {
+    StallionFuture<T> future = new StallionFuture<>();
+    future.complete(value);
+    return future;
+  }
+
+  public static <T> StallionFuture<T> failed(Throwable error) {
+    StallionFuture<T> future = new StallionFuture<>();
+    future.fail(error);
+    return future;
+  }
+
+  public static <T> StallionFuture<T> submit(Executor executor, Task<T> task) {
+    StallionFuture<T> future = new StallionFuture<>();
+    execute(executor, future, () -> run(future, task));
+    return future;
+  }
+
+  /**
+   * Like {@link #submit(Executor, Task)}, failing with a TimeoutException when the task runs for
+   * longer than timeoutMs. The clock starts when the task starts, not while it waits behind other
+   * work on the executor, and time the task spends held back by {@link StallionIoThrottle} does not
+   * count. On timeout the task's future is cancelled so the work behind it can stop.
+   */
+  public static <T> StallionFuture<T> submit(Executor executor, long timeoutMs, String stageName, Task<T> task) {
+    StallionFuture<T> work = new StallionFuture<>();
+    StallionFuture<T> timed = new StallionFuture<>();
+    timed.completeWith(work);
+    execute(executor, work, () -> {
+      Thread worker = Thread.currentThread();
+      long startedAt = StallionClock.elapsedMs();
+      long throttledAtStart = StallionIoThrottle.getThrottledMs(worker);
+      timed.scheduleTimeout(timeoutMs, timeoutMs, stageName, work, () ->
+        StallionClock.elapsedMs() - startedAt - (StallionIoThrottle.getThrottledMs(worker) - throttledAtStart)
+      );
+      run(work, task);
+    });
+    return timed;
+  }
+
+  public boolean complete(T value) {
+    List<Listener<T>> toNotify;
+    synchronized (this) {
+      if (state != PENDING) return false;
+      state = SUCCEEDED;
+      this.value = value;
+      toNotify = detachListeners();
+    }
+    notifyListeners(toNotify, value, null);
+    return true;
+  }
+
+  public boolean fail(Throwable error) {
+    if (error instanceof CancellationException) return cancel();
+    List<Listener<T>> toNotify;
+    synchronized (this) {
+      if (state != PENDING) return false;
+      state = FAILED;
+      this.error = error;
+      toNotify = detachListeners();
+    }
+    notifyListeners(toNotify, null, error);
+    return true;
+  }
+
+  public boolean cancel() {
+    List<Listener<T>> toNotify;
+    List<Runnable> hooks;
+    CancellationException cancellation = new CancellationException("Cancelled");
+    synchronized (this) {
+      if (state != PENDING) return false;
+      state = CANCELLED;
+      this.error = cancellation;
+      toNotify = detachListeners();
+      hooks = cancelHooks;
+      cancelHooks = null;
+    }
+    for (Runnable hook : hooks) {
+      try {
+        hook.run();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+    notifyListeners(toNotify, null, cancellation);
+    return true;
+  }
+
+  public synchronized boolean isDone() {
+    return state != PENDING;
+  }
+
+  public synchronized boolean isCancelled() {
+    return state == CANCELLED;
+  }
+
+  public void whenComplete(Listener<T> listener) {
+    synchronized (this) {
+      if (state == PENDING) {
+        listeners.add(listener);
+        return;
+      }
+    }
+    listener.onComplete(value, error);
+  }
+
+  // Runs when this future is cancelled, used to stop the work behind it
+  public void onCancel(Runnable hook) {
+    synchronized (this) {
+      if (state == PENDING) {
+        cancelHooks.add(hook);
+        return;
+      }
+      if (state != CANCELLED) return;
+    }
+    hook.run();
+  }
+
+  /**
+   * Chains the next step once this future succeeds. Failures skip the step, and cancelling the
+   * returned future cancels whichever of the two is still running.
+   */
+  public <R> StallionFuture<R> thenCompose(Step<T, R> step) {
+    StallionFuture<R> next = new StallionFuture<>();
+    next.onCancel(this::cancel);
+    whenComplete((result, failure) -> {
+      if (failure != null) {
+        next.fail(failure);
+        return;
+      }
+      try {
+        next.completeWith(step.apply(result));
+      } catch (Throwable e) {
+        next.fail(e);
+      }
+    });
+    return next;
+  }
+
+  // Settles this future with the outcome of source, and cancels source when this one is cancelled
+  public void completeWith(StallionFuture<T> source) {
+    onCancel(source::cancel);
+    source.whenComplete((result, failure) -> {
+      if (failure == null) {
+        complete(result);
+      } else {
+        fail(failure);
+      }
+    });
+  }
+
+  private void scheduleTimeout(long delayMs, long timeoutMs, String stageName, StallionFuture<?> work, ActiveTime activeTime) {
+    timeoutScheduler.schedule(() -> {
+      if (isDone()) return;
+      long remainingMs = timeoutMs - activeTime.elapsedMs();
+      if (remainingMs > 0) {
+        // The task was held back by the throttle for part of the time, the deadline moves by that much
+        scheduleTimeout(remainingMs, timeoutMs, stageName, work, activeTime);
+      } else if (fail(new TimeoutException(stageName + " timed out after " + timeoutMs + " ms"))) {
+        work.cancel();
+      }
+    }, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  private static void execute(Executor executor, StallionFuture<?> future, Runnable body) {
+    try {
+      executor.execute(() -> {
+        if (!future.isDone()) body.run();
+      });
+    } catch (RejectedExecutionException e) {
+      future.fail(e);
+    }
+  }
+
+  private static <T> void run(StallionFuture<T> future, Task<T> task) {
+    try {
+      future.complete(task.run(future));
+    } catch (Throwable e) {
+      future.fail(e);
+    }
+  }
+
+  private List<Listener<T>> detachListeners() {
+    List<Listener<T>> detached = listeners;
+    listeners = null;
+    if (state != CANCELLED) cancelHooks = null;
+    return detached;
+  }
+
+  private void notifyListeners(List<Listener<T>> toNotify, T result, Throwable failure) {
+    for (Listener<T> listener : toNotify) {
+      try {
+        listener.onComplete(result, failure);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package com.stallion.utils;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.stallion.storage.StallionConfigConstants;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Size, mtime and SHA-256 of every file in a slot's build folder, written next to it at install.
+ * <p>
+ * Boot only compares the size and mtime of the bundle, which catches truncated and partially
+ * written files without reading them. The content hashes are verified by a background scrub of
+ * the slot the next launch will load; a mismatch quarantines the slot so that launch rolls it
+ * back instead of crashing on it. The quarantine flag lives in the index itself, so replacing the
+ * slot contents clears it. A verified index is recorded in a marker next to it, so later launches
+ * skip slots whose index has not changed since.
+ */
+public class StallionIntegrityIndex {
+  private static final String TAG = "StallionIntegrityIndex";
+  private static final String INDEX_FILE_NAME = "/integrity.json";
+  private static final String VERIFIED_FILE_NAME = "/integrity.verified";
+  private static final String KEY_FILES = "files";
+  private static final String KEY_QUARANTINED = "quarantined";
+  private static final String KEY_SIZE = "size";
+  private static final String KEY_MTIME = "mtime";
+  private static final String KEY_SHA256 = "sha256";
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private static final ExecutorService scrubExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(() -> {
+      Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+      runnable.run();
+    }, "StallionIntegrityScrub");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // Held while the index is replaced, so the scrub can confirm it is still acting on the index it read
+  private static final Object indexLock = new Object();
+
+  public static void write(String slotPath) throws IOException {
+    File buildFolder = new File(slotPath + StallionConfigConstants.UNZIP_FOLDER_NAME);
+    try {
+      JSONObject files = new JSONObject();
+      addFiles(buildFolder, "", files);
+      JSONObject index = new JSONObject();
+      index.put(KEY_FILES, files);
+      writeIndex(slotPath, index);
+    } catch (JSONException e) {
+      throw new IOException("Failed to build integrity index", e);
+    }
+  }
+
+  /**
+   * Cheap boot check of the bundle against the index. Slots installed before the index existed
+   * have none and only need the bundle to exist.
+   */
+  public static boolean isBundleIntact(String slotPath) {
+    File bundle = new File(slotPath + StallionConfigConstants.UNZIP_FOLDER_NAME + StallionConfigConstants.ANDROID_BUNDLE_FILE_NAME);
+    if (!bundle.isFile()) return false;
+    JSONObject index = readIndex(slotPath);
+    if (index == null) return true;
+    if (index.optBoolean(KEY_QUARANTINED)) return false;
+    JSONObject files = index.optJSONObject(KEY_FILES);
+    JSONObject entry = files != null ? files.optJSONObject(StallionConfigConstants.ANDROID_BUNDLE_FILE_NAME.substring(1)) : null;
+    if (entry == null) return true;
+    return entry.optLong(KEY_SIZE) == bundle.length() && entry.optLong(KEY_MTIME) == bundle.lastModified();
+  }
+
+  public static void scrubNextLaunchSlot() {
+    File slot = StallionSlotManager.getNextLaunchSlot();
+    if (slot != null) {
+      scrubExecutor.execute(() -> scrub(slot.getPath()));
+    }
+  }
+
+  private static void scrub(String slotPath) {
+    String identity = getIndexIdentity(slotPath);
+    if (identity == null || identity.equals(readVerifiedMarker(slotPath))) return;
+    JSONObject index = readIndex(slotPath);
+    if (index == null || index.optBoolean(KEY_QUARANTINED)) return;
+    JSONObject files = index.optJSONObject(KEY_FILES);
+    if (files == null) return;
+
+    long startedAt = System.currentTimeMillis();
+    Iterator<String> paths = files.keys();
+    while (paths.hasNext()) {
+      String relativePath = paths.next();
+      JSONObject entry = files.optJSONObject(relativePath);
+      File file = new File(slotPath + StallionConfigConstants.UNZIP_FOLDER_NAME, relativePath);
+      String actualHash;
+      try {
+        actualHash = file.isFile() && file.length() == entry.optLong(KEY_SIZE) ? sha256(file) : null;
+      } catch (IOException e) {
+        actualHash = null;
+      }
+      if (actualHash == null || !actualHash.equals(entry.optString(KEY_SHA256))) {
+        quarantine(slotPath, index, identity, relativePath);
+        return;
+      }
+    }
+    synchronized (indexLock) {
+      if (!identity.equals(getIndexIdentity(slotPath))) return;
+      writeVerifiedMarker(slotPath, identity);
+    }
+    Log.d(TAG, "✅ Verified " + files.length() + " files in " + (System.currentTimeMillis() - startedAt) + " ms");
+  }
+
+  private static void quarantine(String slotPath, JSONObject index, String identity, String relativePath) {
+    synchronized (indexLock) {
+      // An install replaced the slot while it was being read, its new index has not been verified
+      if (!identity.equals(getIndexIdentity(slotPath))) {
+        Log.d(TAG, "Integrity index of " + slotPath + " changed during the scrub, skipping quarantine");
+        return;
+      }
+      Log.e(TAG, "❌ Integrity mismatch in " + slotPath + " at " + relativePath + ", quarantining slot");
+      try {
+        index.put(KEY_QUARANTINED, true);
+        writeIndex(slotPath, index);
+      } catch (JSONException | IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  // SHA-256 of the index contents and its mtime, null without a readable index
+  private static String getIndexIdentity(String slotPath) {
+    File indexFile = new File(slotPath + INDEX_FILE_NAME);
+    long lastModified = indexFile.lastModified();
+    byte[] content = readFile(indexFile);
+    if (content == null) return null;
+    try {
+      return toHex(MessageDigest.getInstance("SHA-256").digest(content)) + '|' + lastModified;
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
+  private static String readVerifiedMarker(String slotPath) {
+    byte[] content = readFile(new File(slotPath + VERIFIED_FILE_NAME));
+    return content != null ? new String(content, StandardCharsets.UTF_8) : null;
+  }
+
+  private static void writeVerifiedMarker(String slotPath, String identity) {
+    try (OutputStream out = new FileOutputStream(slotPath + VERIFIED_FILE_NAME)) {
+      out.write(identity.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      // Without the marker the next launch scrubs the slot again
+      Log.w(TAG, "Verified marker not written: " + e.getMessage());
+    }
+  }
+
+  private static void addFiles(File folder, String prefix, JSONObject files) throws IOException, JSONException {
+    File[] children = folder.listFiles();
+    if (children == null) {
+      throw new IOException("Failed to list files in directory: " + folder.getAbsolutePath());
+    }
+    for (File child : children) {
+      String relativePath = prefix + child.getName();
+      if (child.isDirectory()) {
+        addFiles(child, relativePath + "/", files);
+      } else {
+        JSONObject entry = new JSONObject();
+        entry.put(KEY_SIZE, child.length());
+        entry.put(KEY_MTIME, child.lastModified());
+        entry.put(KEY_SHA256, sha256(child));
+        files.put(relativePath, entry);
+      }
+    }
+  }
+
+  private static JSONObject readIndex(String slotPath) {
+    byte[] content = readFile(new File(slotPath + INDEX_FILE_NAME));
+    if (content == null) return null;
+    try {
+      return new JSONObject(new String(content, StandardCharsets.UTF_8));
+    } catch (JSONException e) {
+      // An unreadable index is treated like a missing one, the bundle checks still apply
+      Log.w(TAG, "Unreadable integrity index: " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static byte[] readFile(File file) {
+    if (!file.isFile()) return null;
+    try (FileInputStream in = new FileInputStream(file)) {
+      byte[] content = new byte[(int) file.length()];
+      int offset = 0;
+      int read;
+      while (offset < content.length && (read = in.read(content, offset, content.length - offset)) != -1) {
+        offset += read;
+      }
+      return offset == content.length ? content : Arrays.copyOf(content, offset);
+    } catch (IOException e) {
+      Log.w(TAG, "Unreadable integrity file: " + e.getMessage());
+      return null;
+    }
+  }
+
+  // Written to a temp file and renamed so a crash never leaves a half written index
+  private static void writeIndex(String slotPath, JSONObject index) throws IOException {
+    File indexFile = new File(slotPath + INDEX_FILE_NAME);
+    File tempFile = new File(slotPath + INDEX_FILE_NAME + ".tmp");
+    synchronized (indexLock) {
+      try (OutputStream out = new FileOutputStream(tempFile)) {
+        out.write(index.toString().getBytes(StandardCharsets.UTF_8));
+      }
+      if (!tempFile.renameTo(indexFile)) {
+        throw new IOException("Failed to write integrity index: " + indexFile.getAbsolutePath());
+      }
+    }
+  }
+
+  private static String sha256(File file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    try (FileInputStream in = new FileInputStream(file)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        StallionIoThrottle.acquire(read);
+        digest.update(buffer, 0, read);
+      }
+    }
+    StallionIoThrottle.onEntryDone();
+    return toHex(digest.digest());
+  }
+
+  private static String toHex(byte[] hash) {
+    StringBuilder hex = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+}
@@ -0,0 +1,143 @@
+package com.stallion.utils;
+
+import com.stallion.storage.StallionStateManager;
+
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Paces install I/O, extraction and integrity hashing, so it does not compete with
+ * the app for flash bandwidth.
+ * <p>
+ * While the app is in the foreground, I/O is capped at AirshipForegroundInstallIoKbps and the
+ * install thread backs off briefly between batches of files. The host can also pause installs
+ * around work that must not stutter, such as startup or an animation. A pause always expires on
+ * its own so a missed {@link #resume()} cannot stall an install into its timeout. The time each
+ * thread spends held back is tracked, install timeouts leave it out.
+ */
+public class StallionIoThrottle {
+  public static final long MAX_PAUSE_MS = 10 * 1000;
+  private static final int ENTRIES_PER_BATCH = 16;
+  private static final long BATCH_BACKOFF_MS = 10;
+  // Unused budget carried over after an idle stretch, so a cap does not turn into a burst
+  private static final long MAX_BURST_MS = 250;
+
+  private static final Object lock = new Object();
+  private static long pausedUntil;
+  private static long nextIoAt;
+  private static int entriesInBatch;
+  private static final Map<Thread, HeldBack> heldBackByThread = new WeakHashMap<>();
+
+  private static class HeldBack {
+    long totalMs;
+    long waitStartedAt;
+    boolean isWaiting;
+  }
+
+  public static void pause(long durationMs) {
+    synchronized (lock) {
+      pausedUntil = Math.max(pausedUntil, StallionClock.elapsedMs() + Math.min(durationMs, MAX_PAUSE_MS));
+    }
+  }
+
+  public static void resume() {
+    synchronized (lock) {
+      pausedUntil = 0;
+      lock.notifyAll();
+    }
+  }
+
+  // Called before each chunk of install I/O, blocks while paused or over the foreground cap
+  public static void acquire(long bytes) throws InterruptedIOException {
+    try {
+      long waitMs;
+      synchronized (lock) {
+        if (pausedUntil > StallionClock.elapsedMs()) {
+          beginWait();
+          try {
+            waitWhilePaused();
+          } finally {
+            endWait();
+          }
+        }
+        long bytesPerSecond = getForegroundBytesPerSecond();
+        if (bytesPerSecond <= 0) return;
+        long now = StallionClock.elapsedMs();
+        nextIoAt = Math.max(nextIoAt, now - MAX_BURST_MS) + bytes * 1000 / bytesPerSecond;
+        waitMs = nextIoAt - now;
+      }
+      // Most chunks fit the budget, only an actual wait is recorded as held back time
+      if (waitMs <= 0) return;
+      beginWait();
+      try {
+        Thread.sleep(waitMs);
+      } finally {
+        endWait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Install interrupted");
+    }
+  }
+
+  // Called after each file, yields the disk between batches while the app is in the foreground
+  public static void onEntryDone() throws InterruptedIOException {
+    synchronized (lock) {
+      if (++entriesInBatch < ENTRIES_PER_BATCH) return;
+      entriesInBatch = 0;
+    }
+    if (!StallionStateManager.getInstance().getIsInForeground()) return;
+    beginWait();
+    try {
+      Thread.sleep(BATCH_BACKOFF_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Install interrupted");
+    } finally {
+      endWait();
+    }
+  }
+
+  // Total time the thread has spent held back by the throttle, including a wait still in progress
+  public static long getThrottledMs(Thread thread) {
+    synchronized (lock) {
+      HeldBack heldBack = heldBackByThread.get(thread);
+      if (heldBack == null) return 0;
+      return heldBack.totalMs + (heldBack.isWaiting ? StallionClock.elapsedMs() - heldBack.waitStartedAt : 0);
+    }
+  }
+
+  private static void beginWait() {
+    synchronized (lock) {
+      HeldBack heldBack = heldBackByThread.get(Thread.currentThread());
+      if (heldBack == null) {
+        heldBack = new HeldBack();
+        heldBackByThread.put(Thread.currentThread(), heldBack);
+      }
+      heldBack.waitStartedAt = StallionClock.elapsedMs();
+      heldBack.isWaiting = true;
+    }
+  }
+
+  private static void endWait() {
+    synchronized (lock) {
+      HeldBack heldBack = heldBackByThread.get(Thread.currentThread());
+      heldBack.totalMs += StallionClock.elapsedMs() - heldBack.waitStartedAt;
+      heldBack.isWaiting = false;
+    }
+  }
+
+  private static void waitWhilePaused() throws InterruptedException {
+    long remaining;
+    while ((remaining = pausedUntil - StallionClock.elapsedMs()) > 0) {
+      lock.wait(remaining);
+    }
+  }
+
+  private static long getForegroundBytesPerSecond() {
+    StallionStateManager stateManager = StallionStateManager.getInstance();
+    if (!stateManager.getIsInForeground()) return 0;
+    return stateManager.getStallionConfig().getForegroundInstallIoBytesPerSecond();
+  }
+}
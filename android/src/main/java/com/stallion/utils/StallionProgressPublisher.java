@@ -0,0 +1,91 @@
+package com.stallion.utils;
+
+import android.os.SystemClock;
+
+import com.stallion.storage.StallionStateManager;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fans download progress out to any number of listeners. The download reports every chunk, and
+ * samples go out at most once per AirshipProgressEventIntervalMs plus a final one at completion.
+ * When the server sent no length, the final sample reports the received bytes as the total. A
+ * listener subscribing mid download is handed the latest sample straight away.
+ */
+public class StallionProgressPublisher {
+  // Weight of the newest sample in the average throughput
+  private static final double EWMA_ALPHA = 0.3;
+
+  public interface ProgressListener {
+    void onProgress(StallionDownloadProgress progress);
+  }
+
+  private final CopyOnWriteArrayList<ProgressListener> listeners = new CopyOnWriteArrayList<>();
+  private final long minIntervalMs;
+  private volatile StallionDownloadProgress lastProgress;
+  private long lastSampleAt = -1;
+  private long lastSampleBytes;
+  private double averageBytesPerSecond;
+
+  public StallionProgressPublisher() {
+    this.minIntervalMs = StallionStateManager.getInstance().getStallionConfig().getProgressEventIntervalMs();
+  }
+
+  public void subscribe(ProgressListener listener) {
+    listeners.add(listener);
+    StallionDownloadProgress progress = lastProgress;
+    if (progress != null) {
+      listener.onProgress(progress);
+    }
+  }
+
+  public void unsubscribe(ProgressListener listener) {
+    listeners.remove(listener);
+  }
+
+  // Called from the download thread only
+  public void publish(long receivedBytes, long totalBytes) {
+    sample(receivedBytes, totalBytes, totalBytes > 0 && receivedBytes >= totalBytes);
+  }
+
+  // Called from the download thread once the whole body is read. A known total already ended on
+  // its final sample in publish.
+  public void finish(long receivedBytes, long totalBytes) {
+    if (totalBytes > 0) return;
+    sample(receivedBytes, receivedBytes, true);
+  }
+
+  private void sample(long receivedBytes, long totalBytes, boolean isComplete) {
+    long now = SystemClock.elapsedRealtime();
+    if (lastSampleAt < 0) {
+      // First chunk only sets the baseline, bytes resumed from disk are not throughput
+      lastSampleAt = now;
+      lastSampleBytes = receivedBytes;
+      if (!isComplete) return;
+    }
+    long elapsedMs = now - lastSampleAt;
+    if (elapsedMs < minIntervalMs && !isComplete) return;
+
+    double bytesPerSecond = elapsedMs > 0 ? (receivedBytes - lastSampleBytes) * 1000.0 / elapsedMs : 0;
+    averageBytesPerSecond = averageBytesPerSecond > 0
+      ? EWMA_ALPHA * bytesPerSecond + (1 - EWMA_ALPHA) * averageBytesPerSecond
+      : bytesPerSecond;
+    lastSampleAt = now;
+    lastSampleBytes = receivedBytes;
+
+    StallionDownloadProgress progress = new StallionDownloadProgress(
+      receivedBytes,
+      totalBytes,
+      bytesPerSecond,
+      averageBytesPerSecond
+    );
+    lastProgress = progress;
+    for (ProgressListener listener : listeners) {
+      try {
+        listener.onProgress(progress);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.stallion.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.facebook.react.ReactApplication;
+import com.facebook.react.ReactInstanceManager;
+import com.facebook.react.ReactNativeHost;
+import com.facebook.react.bridge.JSBundleLoader;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.stallion.Stallion;
+import com.stallion.storage.StallionStateManager;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Applies a new bundle by recreating only the React context, keeping the process and its native
+ * initialisation warm.
+ * <p>
+ * The bundle is re-resolved through {@link Stallion#getJSBundleFileForReload}, which mounts a
+ * release installed since launch, and the host's bundle loader is pointed at it before reloading.
+ * The loader is not exposed by React Native, so it is swapped by reflection on
+ * ReactInstanceManager (bridge) or on the ReactHost delegate (bridgeless). ReactHost only exists
+ * from React Native 0.73, so it is reached by reflection too and older versions keep compiling.
+ * When any of that is not available the caller falls back to a process restart.
+ */
+public class StallionReloader {
+  private static final String TAG = "StallionReloader";
+  private static final String ASSETS_PREFIX = "assets://";
+  private static final String RELOAD_REASON = "Stallion bundle update";
+
+  // Reloads in process when possible, otherwise restarts the process
+  public static void restart(Context context) {
+    if (!reloadInProcess(context)) {
+      ProcessPhoenix.triggerRebirth(context);
+    }
+  }
+
+  public static boolean reloadInProcess(Context context) {
+    try {
+      Context applicationContext = context.getApplicationContext();
+      if (!(applicationContext instanceof ReactApplication)) return false;
+      ReactApplication reactApplication = (ReactApplication) applicationContext;
+
+      String bundlePath = Stallion.getJSBundleFileForReload(applicationContext);
+      JSBundleLoader bundleLoader = bundlePath.startsWith(ASSETS_PREFIX)
+        ? JSBundleLoader.createAssetLoader(applicationContext, bundlePath, false)
+        : JSBundleLoader.createFileLoader(bundlePath);
+
+      Object reactHost = invoke(reactApplication, "getReactHost");
+      if (reactHost != null && invoke(reactHost, "getCurrentReactContext") != null) {
+        Object delegate = readField(reactHost, "mReactHostDelegate");
+        if (delegate == null || !writeField(delegate, "jsBundleLoader", bundleLoader)) return false;
+        StallionStateManager.getInstance().setIsMounted(false);
+        reactHost.getClass().getMethod("reload", String.class).invoke(reactHost, RELOAD_REASON);
+        Log.d(TAG, "🔄 Reloading React host with " + bundlePath);
+        return true;
+      }
+
+      ReactNativeHost reactNativeHost = reactApplication.getReactNativeHost();
+      if (reactNativeHost == null || !reactNativeHost.hasInstance()) return false;
+      ReactInstanceManager instanceManager = reactNativeHost.getReactInstanceManager();
+      if (!writeField(instanceManager, "mBundleLoader", bundleLoader)) return false;
+      StallionStateManager.getInstance().setIsMounted(false);
+      UiThreadUtil.runOnUiThread(instanceManager::recreateReactContextInBackground);
+      Log.d(TAG, "🔄 Recreating React context with " + bundlePath);
+      return true;
+    } catch (Throwable e) {
+      // Older React Native versions lack some of these APIs, a restart still applies the bundle
+      Log.w(TAG, "In-process reload unavailable: " + e);
+      return false;
+    }
+  }
+
+  // Calls a public no-argument method, null when the running React Native version lacks it
+  private static Object invoke(Object target, String name) throws ReflectiveOperationException {
+    Method method;
+    try {
+      method = target.getClass().getMethod(name);
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    return method.invoke(target);
+  }
+
+  private static Object readField(Object target, String name) throws IllegalAccessException {
+    Field field = findField(target.getClass(), name);
+    if (field == null) return null;
+    field.setAccessible(true);
+    return field.get(target);
+  }
+
+  private static boolean writeField(Object target, String name, Object value) throws IllegalAccessException {
+    Field field = findField(target.getClass(), name);
+    if (field == null) return false;
+    field.setAccessible(true);
+    field.set(target, value);
+    return true;
+  }
+
+  private static Field findField(Class<?> type, String name) {
+    for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+      try {
+        return current.getDeclaredField(name);
+      } catch (NoSuchFieldException ignored) {}
+    }
+    return null;
+  }
+}
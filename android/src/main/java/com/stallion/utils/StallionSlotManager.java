@@ -1,7 +1,10 @@
 package com.stallion.utils;
 
+import android.util.Log;
+
 import com.stallion.events.StallionEventManager;
 import com.stallion.storage.StallionConfigConstants;
+import com.stallion.storage.StallionMeta;
 import com.stallion.storage.StallionMetaConstants;
 import com.stallion.storage.StallionStateManager;
 import com.stallion.events.StallionEventConstants.NativeProdEventTypes;
@@ -11,6 +14,7 @@ import org.json.JSONObject;
 import java.io.File;
 
 public class StallionSlotManager {
+  private static final String TAG = "StallionSlotManager";
 
   private static final StallionStateManager stateManager = StallionStateManager.getInstance();
   private static final String baseFolderPath = stateManager.getStallionConfig().getFilesDirectory();
@@ -64,18 +68,71 @@ public class StallionSlotManager {
     stateManager.syncStallionMeta();
   }
 
+  /**
+   * Renames the new slot over the stable one, called at mount right before the temp slot becomes
+   * the new slot. The meta moves the hash across, clears the new hash and points the current slot
+   * at stable in one sync, so a crash before the mount completes boots the stable slot.
+   */
   public static void stabilizeProd() {
+    StallionMeta stallionMeta = stateManager.stallionMeta;
+    String newReleaseHash = stallionMeta.getProdNewHash();
+    File newSlot = new File(baseFolderPath, StallionConfigConstants.PROD_DIRECTORY + StallionConfigConstants.NEW_FOLDER_SLOT);
+    File stableSlot = new File(baseFolderPath, StallionConfigConstants.PROD_DIRECTORY + StallionConfigConstants.STABLE_FOLDER_SLOT);
+
+    if (!newSlot.exists()) {
+      // Nothing to promote, the stable slot stays the rollback target
+      Log.e(TAG, "❌ New slot missing for " + newReleaseHash + ", keeping the stable slot");
+      stallionMeta.setProdNewHash("");
+      stallionMeta.setCurrentProdSlot(
+        stallionMeta.getProdStableHash().isEmpty()
+          ? StallionMetaConstants.SlotStates.DEFAULT_SLOT
+          : StallionMetaConstants.SlotStates.STABLE_SLOT
+      );
+      stateManager.syncStallionMeta();
+      return;
+    }
     try {
-      File newSlot = new File(baseFolderPath, StallionConfigConstants.PROD_DIRECTORY + StallionConfigConstants.NEW_FOLDER_SLOT);
-      File stableSlot = new File(baseFolderPath, StallionConfigConstants.PROD_DIRECTORY + StallionConfigConstants.STABLE_FOLDER_SLOT);
-
-      StallionFileManager.copyDirectory(newSlot, stableSlot);
+      StallionFileManager.moveFile(newSlot, stableSlot);
+    } catch (Exception e) {
+      Log.e(TAG, "❌ Failed to stabilize " + newReleaseHash + ": " + e.getMessage());
+      e.printStackTrace();
+      return;
+    }
+    stallionMeta.setProdStableHash(newReleaseHash);
+    stallionMeta.setProdNewHash("");
+    stallionMeta.setCurrentProdSlot(StallionMetaConstants.SlotStates.STABLE_SLOT);
+    stateManager.syncStallionMeta();
+    emitStabilizeEvent(newReleaseHash);
+  }
 
-      String newReleaseHash = stateManager.stallionMeta.getProdNewHash();
-      stateManager.stallionMeta.setProdStableHash(newReleaseHash);
-      stateManager.syncStallionMeta();
-      emitStabilizeEvent(newReleaseHash);
-    } catch (Exception ignored) {}
+  // Slot folder the next launch will load, including a temp slot that gets mounted on launch
+  public static File getNextLaunchSlot() {
+    StallionMeta stallionMeta = stateManager.stallionMeta;
+    String slotFolder;
+    if (stallionMeta.getSwitchState() == StallionMetaConstants.SwitchState.PROD) {
+      String prodTempHash = stallionMeta.getProdTempHash();
+      if (prodTempHash != null && !prodTempHash.isEmpty()) {
+        slotFolder = StallionConfigConstants.PROD_DIRECTORY + StallionConfigConstants.TEMP_FOLDER_SLOT;
+      } else if (stallionMeta.getCurrentProdSlot() == StallionMetaConstants.SlotStates.NEW_SLOT) {
+        slotFolder = StallionConfigConstants.PROD_DIRECTORY + StallionConfigConstants.NEW_FOLDER_SLOT;
+      } else if (stallionMeta.getCurrentProdSlot() == StallionMetaConstants.SlotStates.STABLE_SLOT) {
+        slotFolder = StallionConfigConstants.PROD_DIRECTORY + StallionConfigConstants.STABLE_FOLDER_SLOT;
+      } else {
+        return null;
+      }
+    } else if (stallionMeta.getSwitchState() == StallionMetaConstants.SwitchState.STAGE) {
+      String stageTempHash = stallionMeta.getStageTempHash();
+      if (stageTempHash != null && !stageTempHash.isEmpty()) {
+        slotFolder = StallionConfigConstants.STAGE_DIRECTORY + StallionConfigConstants.TEMP_FOLDER_SLOT;
+      } else if (stallionMeta.getCurrentStageSlot() == StallionMetaConstants.SlotStates.NEW_SLOT) {
+        slotFolder = StallionConfigConstants.STAGE_DIRECTORY + StallionConfigConstants.NEW_FOLDER_SLOT;
+      } else {
+        return null;
+      }
+    } else {
+      return null;
+    }
+    return new File(baseFolderPath + slotFolder);
   }
 
   private static void emitRollbackEvent(boolean isAutoRollback, String rolledBackReleaseHash, String errorString) {
@@ -0,0 +1,144 @@
+package com.stallion.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class StallionEventCodecTest {
+  private static final String RELEASE_HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+  private static final StallionEventCodec.Header HEADER = StallionEventCodec.decodeHeader(
+    StallionEventCodec.encodeHeader("project", "android", "1.0", "uid")
+  );
+
+  @Test
+  public void headerRoundTrips() {
+    assertEquals("project", HEADER.get(0));
+    assertEquals("android", HEADER.get(1));
+    assertEquals("1.0", HEADER.get(2));
+    assertEquals("uid", HEADER.get(3));
+  }
+
+  @Test
+  public void unknownHeaderVersionIsRejected() {
+    assertNull(StallionEventCodec.decodeHeader(new byte[] { 9, 0 }));
+    assertNull(StallionEventCodec.decodeHeader(new byte[0]));
+    assertNull(StallionEventCodec.decodeHeader(null));
+  }
+
+  @Test
+  public void eventRoundTrips() throws Exception {
+    JSONObject event = new JSONObject();
+    event.put("eventId", "id-1");
+    event.put("eventType", "INSTALLED_PROD");
+    event.put("eventTimestamp", 1700000000000L);
+    event.put("releaseHash", RELEASE_HASH);
+    event.put("isAutoRollback", false);
+    event.put("count", -3);
+    event.put("progress", 0.25);
+    event.put("meta", "Some message");
+    event.put("customKey", "custom value");
+
+    JSONObject decoded = StallionEventCodec.toJson("id-1", StallionEventCodec.encode(event, HEADER), HEADER, false);
+
+    assertEquals("id-1", decoded.getString("eventId"));
+    assertEquals("INSTALLED_PROD", decoded.getString("eventType"));
+    assertEquals(1700000000000L, decoded.getLong("eventTimestamp"));
+    assertEquals(RELEASE_HASH, decoded.getString("releaseHash"));
+    assertFalse(decoded.getBoolean("isAutoRollback"));
+    assertEquals(-3, decoded.getLong("count"));
+    assertEquals(0.25, decoded.getDouble("progress"), 0);
+    assertEquals("Some message", decoded.getString("meta"));
+    assertEquals("custom value", decoded.getString("customKey"));
+  }
+
+  @Test
+  public void headerFieldsAreStoredOnceAndRestoredOnRequest() throws Exception {
+    JSONObject event = new JSONObject();
+    event.put("eventType", "SYNC_ERROR_PROD");
+    event.put("eventTimestamp", 1L);
+    event.put("projectId", "project");
+    event.put("appVersion", "1.0");
+    event.put("uid", "other-uid");
+
+    byte[] payload = StallionEventCodec.encode(event, HEADER);
+    JSONObject withoutHeader = StallionEventCodec.toJson("id", payload, HEADER, false);
+    JSONObject withHeader = StallionEventCodec.toJson("id", payload, HEADER, true);
+
+    assertFalse(withoutHeader.has("projectId"));
+    assertFalse(withoutHeader.has("appVersion"));
+    // Values that differ from the header are kept with the event
+    assertEquals("other-uid", withoutHeader.getString("uid"));
+    assertEquals("project", withHeader.getString("projectId"));
+    assertEquals("android", withHeader.getString("platform"));
+    assertEquals("other-uid", withHeader.getString("uid"));
+  }
+
+  @Test
+  public void hexStringsArePacked() throws Exception {
+    JSONObject event = new JSONObject();
+    event.put("eventType", "INSTALLED_PROD");
+    event.put("eventTimestamp", 1L);
+    event.put("releaseHash", RELEASE_HASH);
+
+    byte[] payload = StallionEventCodec.encode(event, HEADER);
+
+    assertTrue(payload.length < RELEASE_HASH.length());
+  }
+
+  @Test
+  public void uppercaseHexKeepsItsCase() throws Exception {
+    JSONObject event = new JSONObject();
+    event.put("eventType", "INSTALLED_PROD");
+    event.put("eventTimestamp", 1L);
+    event.put("releaseHash", RELEASE_HASH.toUpperCase());
+
+    JSONObject decoded = StallionEventCodec.toJson("id", StallionEventCodec.encode(event, HEADER), HEADER, false);
+
+    assertEquals(RELEASE_HASH.toUpperCase(), decoded.getString("releaseHash"));
+  }
+
+  @Test
+  public void nestedObjectsAndArraysRoundTrip() throws Exception {
+    JSONObject meta = new JSONObject();
+    meta.put("reason", "timeout");
+    meta.put("attempt", 2);
+    meta.put("releaseHash", RELEASE_HASH);
+    meta.put("steps", new JSONArray().put("download").put(new JSONObject().put("ok", false)));
+    JSONObject event = new JSONObject();
+    event.put("eventType", "SYNC_ERROR_PROD");
+    event.put("eventTimestamp", 1L);
+    event.put("meta", meta);
+    event.put("tags", new JSONArray().put(1).put("two").put(true));
+
+    JSONObject decoded = StallionEventCodec.toJson("id", StallionEventCodec.encode(event, HEADER), HEADER, false);
+
+    JSONObject decodedMeta = decoded.getJSONObject("meta");
+    assertEquals("timeout", decodedMeta.getString("reason"));
+    assertEquals(2, decodedMeta.getLong("attempt"));
+    assertEquals(RELEASE_HASH, decodedMeta.getString("releaseHash"));
+    JSONArray steps = decodedMeta.getJSONArray("steps");
+    assertEquals("download", steps.getString(0));
+    assertFalse(steps.getJSONObject(1).getBoolean("ok"));
+    JSONArray tags = decoded.getJSONArray("tags");
+    assertEquals(3, tags.length());
+    assertEquals(1, tags.getLong(0));
+    assertEquals("two", tags.getString(1));
+    assertTrue(tags.getBoolean(2));
+  }
+
+  @Test
+  public void decodesEventTypeWithoutTheRestOfThePayload() throws Exception {
+    JSONObject known = new JSONObject();
+    known.put("eventType", "DOWNLOAD_PROGRESS_STAGE");
+    JSONObject unknown = new JSONObject();
+    unknown.put("eventType", "CUSTOM_EVENT");
+
+    assertEquals("DOWNLOAD_PROGRESS_STAGE", StallionEventCodec.decodeEventType(StallionEventCodec.encode(known, HEADER)));
+    assertEquals("CUSTOM_EVENT", StallionEventCodec.decodeEventType(StallionEventCodec.encode(unknown, HEADER)));
+  }
+}
@@ -0,0 +1,268 @@
+package com.stallion.events;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class StallionEventLogTest {
+  private static final byte[] HEADER = StallionEventCodec.encodeHeader("project", "android", "1.0", "uid");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File logDirectory;
+
+  @Before
+  public void setUp() {
+    logDirectory = new File(temporaryFolder.getRoot(), "events");
+  }
+
+  @Test
+  public void readsRecordsInAppendOrder() throws Exception {
+    StallionEventLog eventLog = newLog(1024);
+    for (int i = 0; i < 20; i++) {
+      eventLog.append("event-" + i, i % 3, payload(i));
+    }
+
+    StallionEventLog.Batch batch = eventLog.read(StallionEventLog.Cursor.HEAD, 100);
+
+    assertEquals(20, batch.records.size());
+    for (int i = 0; i < 20; i++) {
+      StallionEventLog.Record record = batch.records.get(i);
+      assertEquals("event-" + i, record.eventId);
+      assertEquals(i % 3, record.priority);
+      assertArrayEquals(payload(i), record.payload);
+      assertArrayEquals(HEADER, record.segmentHeader);
+    }
+  }
+
+  @Test
+  public void cursorContinuesWhereTheLastReadStopped() throws Exception {
+    StallionEventLog eventLog = newLog(256);
+    for (int i = 0; i < 30; i++) {
+      eventLog.append("event-" + i, 1, payload(i));
+    }
+
+    List<String> eventIds = new ArrayList<>();
+    StallionEventLog.Cursor cursor = StallionEventLog.Cursor.HEAD;
+    while (true) {
+      StallionEventLog.Batch batch = eventLog.read(cursor, 7);
+      if (batch.records.isEmpty()) break;
+      for (StallionEventLog.Record record : batch.records) {
+        eventIds.add(record.eventId);
+      }
+      cursor = batch.next;
+    }
+
+    assertEquals(30, eventIds.size());
+    for (int i = 0; i < 30; i++) {
+      assertEquals("event-" + i, eventIds.get(i));
+    }
+  }
+
+  @Test
+  public void acknowledgedRecordsAreNotReadAgain() throws Exception {
+    StallionEventLog eventLog = newLog(1024);
+    eventLog.append("a", 1, payload(1));
+    eventLog.append("b", 1, payload(2));
+    eventLog.append("c", 1, payload(3));
+
+    eventLog.acknowledge(Collections.singletonList("b"));
+
+    assertEquals(2, eventLog.size());
+    assertEquals(Arrays.asList("a", "c"), eventIds(eventLog.read(StallionEventLog.Cursor.HEAD, 10)));
+  }
+
+  @Test
+  public void fullyAcknowledgedSegmentsAreDeleted() throws Exception {
+    StallionEventLog eventLog = newLog(64);
+    List<String> eventIds = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      eventLog.append("event-" + i, 1, payload(i));
+      eventIds.add("event-" + i);
+    }
+    assertTrue(segmentFiles().length > 1);
+
+    eventLog.acknowledge(eventIds);
+
+    assertEquals(0, eventLog.size());
+    assertEquals(0, segmentFiles().length);
+  }
+
+  @Test
+  public void recordsAndAcknowledgementsSurviveReopening() throws Exception {
+    StallionEventLog eventLog = newLog(1024);
+    eventLog.append("a", 1, payload(1));
+    eventLog.append("b", 1, payload(2));
+    eventLog.read(StallionEventLog.Cursor.HEAD, 10);
+    eventLog.acknowledge(Collections.singletonList("a"));
+
+    StallionEventLog reopened = newLog(1024);
+
+    assertEquals(1, reopened.size());
+    assertEquals(Collections.singletonList("b"), eventIds(reopened.read(StallionEventLog.Cursor.HEAD, 10)));
+  }
+
+  @Test
+  public void tornTrailingRecordIsDroppedOnOpen() throws Exception {
+    StallionEventLog eventLog = newLog(1024);
+    eventLog.append("a", 1, payload(1));
+    eventLog.append("b", 1, payload(2));
+    File segment = segmentFiles()[0];
+    try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+      raf.setLength(raf.length() - 3);
+    }
+
+    StallionEventLog reopened = newLog(1024);
+    reopened.append("c", 1, payload(3));
+
+    assertEquals(Arrays.asList("a", "c"), eventIds(reopened.read(StallionEventLog.Cursor.HEAD, 10)));
+  }
+
+  @Test
+  public void unreadableSegmentIsDroppedWithoutLosingTheOthers() throws Exception {
+    StallionEventLog eventLog = newLog(1024);
+    eventLog.append("a", 1, payload(1));
+    // A segment whose header claims more bytes than the file holds is rejected when opened
+    try (FileOutputStream out = new FileOutputStream(new File(logDirectory, "7.seg"))) {
+      out.write(new byte[] { 0x7f, 0, 0, 0, 1, 2, 3 });
+    }
+
+    StallionEventLog reopened = newLog(1024);
+
+    assertEquals(Collections.singletonList("a"), eventIds(reopened.read(StallionEventLog.Cursor.HEAD, 10)));
+    assertFalse(new File(logDirectory, "7.seg").exists());
+  }
+
+  @Test
+  public void corruptedRecordCutsTheSegmentAtTheLastGoodRecord() throws Exception {
+    StallionEventLog eventLog = newLog(1024);
+    eventLog.append("a", 1, payload(1));
+    eventLog.append("b", 1, payload(2));
+    eventLog.append("c", 1, payload(3));
+    // Payload length of "b", after the header, all of "a" and the id and priority of "b"
+    long recordLength = 2 + 1 + 1 + 4 + payload(1).length;
+    try (RandomAccessFile raf = new RandomAccessFile(segmentFiles()[0], "rw")) {
+      raf.seek(4 + HEADER.length + recordLength + 2 + 1 + 1);
+      raf.writeInt(Integer.MAX_VALUE);
+    }
+
+    assertEquals(Collections.singletonList("a"), eventIds(eventLog.read(StallionEventLog.Cursor.HEAD, 10)));
+    eventLog.append("d", 1, payload(4));
+
+    assertEquals(Arrays.asList("a", "d"), eventIds(eventLog.read(StallionEventLog.Cursor.HEAD, 10)));
+    assertEquals(2, eventLog.size());
+  }
+
+  @Test
+  public void evictionTakesTheLowestPriorityFirst() throws Exception {
+    StallionEventLog eventLog = newLog(1024);
+    eventLog.append("high", 2, payload(1));
+    eventLog.append("low-1", 0, payload(2));
+    eventLog.append("normal", 1, payload(3));
+    eventLog.append("low-2", 0, payload(4));
+
+    List<StallionEventLog.Record> evicted = eventLog.evict(3, 1);
+
+    assertEquals(Arrays.asList("low-1", "low-2", "normal"), recordIds(evicted));
+    assertEquals(Collections.singletonList("high"), eventIds(eventLog.read(StallionEventLog.Cursor.HEAD, 10)));
+  }
+
+  @Test
+  public void changedHeaderStartsANewSegment() throws Exception {
+    StallionEventLog eventLog = newLog(1024);
+    eventLog.append("a", 1, payload(1));
+    byte[] updatedHeader = StallionEventCodec.encodeHeader("project", "android", "2.0", "uid");
+
+    StallionEventLog updated = new StallionEventLog(logDirectory, 1024, updatedHeader);
+    updated.append("b", 1, payload(2));
+
+    List<StallionEventLog.Record> records = updated.read(StallionEventLog.Cursor.HEAD, 10).records;
+    assertEquals(2, segmentFiles().length);
+    assertArrayEquals(HEADER, records.get(0).segmentHeader);
+    assertArrayEquals(updatedHeader, records.get(1).segmentHeader);
+  }
+
+  @Test
+  public void appendToOpenSegmentUsesThePreparedSegment() throws Exception {
+    StallionEventLog eventLog = newLog(32);
+    eventLog.openActiveSegment();
+    eventLog.append("a", 1, payload(1));
+    int segmentCount = segmentFiles().length;
+
+    // Past the size limit, a regular append would roll a new segment here
+    eventLog.appendToOpenSegment("crash", 2, payload(2));
+
+    assertEquals(segmentCount, segmentFiles().length);
+    assertEquals(Arrays.asList("a", "crash"), eventIds(eventLog.read(StallionEventLog.Cursor.HEAD, 10)));
+  }
+
+  // Budget is two orders of magnitude above a typical run, it only catches a regression to quadratic work
+  @Test
+  public void tenThousandEventsBenchmark() throws Exception {
+    int eventCount = 10000;
+    StallionEventLog eventLog = newLog(64 * 1024);
+    byte[] eventPayload = new byte[120];
+    long startedAt = System.nanoTime();
+
+    for (int i = 0; i < eventCount; i++) {
+      eventLog.append("event-" + i, i % 3, eventPayload);
+    }
+    List<String> eventIds = new ArrayList<>();
+    StallionEventLog.Cursor cursor = StallionEventLog.Cursor.HEAD;
+    StallionEventLog.Batch batch;
+    while (!(batch = eventLog.read(cursor, 100)).records.isEmpty()) {
+      eventIds.addAll(recordIds(batch.records));
+      cursor = batch.next;
+    }
+    for (int i = 0; i < eventIds.size(); i += 100) {
+      eventLog.acknowledge(eventIds.subList(i, Math.min(i + 100, eventIds.size())));
+    }
+
+    long elapsedMs = (System.nanoTime() - startedAt) / 1000000;
+    assertEquals(eventCount, eventIds.size());
+    assertEquals(0, eventLog.size());
+    assertEquals(0, segmentFiles().length);
+    assertTrue("10k events took " + elapsedMs + "ms", elapsedMs < 20000);
+  }
+
+  private StallionEventLog newLog(long maxSegmentBytes) {
+    return new StallionEventLog(logDirectory, maxSegmentBytes, HEADER);
+  }
+
+  private File[] segmentFiles() {
+    File[] files = logDirectory.listFiles((directory, name) -> name.endsWith(".seg"));
+    return files != null ? files : new File[0];
+  }
+
+  private static byte[] payload(int index) {
+    return ("payload-" + index).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> eventIds(StallionEventLog.Batch batch) {
+    return recordIds(batch.records);
+  }
+
+  private static List<String> recordIds(List<StallionEventLog.Record> records) {
+    List<String> eventIds = new ArrayList<>();
+    for (StallionEventLog.Record record : records) {
+      eventIds.add(record.eventId);
+    }
+    return eventIds;
+  }
+}
@@ -0,0 +1,76 @@
+package com.stallion.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.stallion.events.StallionEventConstants.EventPriority;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class StallionEventQueuePolicyTest {
+
+  @Test
+  public void usesTheDefaultLimitWhenNoneIsConfigured() {
+    StallionEventQueuePolicy policy = new StallionEventQueuePolicy(0, "");
+
+    assertEquals(StallionEventQueuePolicy.DEFAULT_MAX_QUEUED_EVENTS, policy.getMaxQueuedEvents());
+    assertEquals(StallionEventQueuePolicy.DEFAULT_MAX_QUEUED_EVENTS / 10, policy.getEvictionBatchSize());
+    assertEquals(1, new StallionEventQueuePolicy(5, "").getEvictionBatchSize());
+  }
+
+  @Test
+  public void samplingRatesAreParsedAndClamped() {
+    StallionEventQueuePolicy policy = new StallionEventQueuePolicy(
+      100,
+      " SYNC_ERROR_PROD : 0 ,DOWNLOAD_RESUME_PROD:5,broken,DOWNLOAD_PROGRESS_STAGE:abc"
+    );
+
+    for (int i = 0; i < 100; i++) {
+      assertFalse(policy.shouldSample("SYNC_ERROR_PROD"));
+      assertTrue(policy.shouldSample("DOWNLOAD_RESUME_PROD"));
+      assertTrue(policy.shouldSample("DOWNLOAD_PROGRESS_STAGE"));
+      assertTrue(policy.shouldSample("INSTALLED_PROD"));
+    }
+  }
+
+  @Test
+  public void lifecycleEventsOutrankNoisyOnes() {
+    StallionEventQueuePolicy policy = new StallionEventQueuePolicy(100, "");
+
+    assertEquals(EventPriority.HIGH, policy.priorityOf("INSTALLED_PROD"));
+    assertEquals(EventPriority.HIGH, policy.priorityOf("AUTO_ROLLED_BACK_PROD"));
+    assertEquals(EventPriority.LOW, policy.priorityOf("SYNC_ERROR_PROD"));
+    assertEquals(EventPriority.LOW, policy.priorityOf("DOWNLOAD_PROGRESS_STAGE"));
+    assertEquals(EventPriority.NORMAL, policy.priorityOf("CUSTOM_EVENT"));
+  }
+
+  @Test
+  public void dropCountsAreClearedOnlyByWhatWasReported() {
+    StallionEventQueuePolicy policy = new StallionEventQueuePolicy(100, "");
+    assertNull(policy.snapshotDropCounts());
+
+    policy.recordDrop("SYNC_ERROR_PROD");
+    policy.recordDrop("SYNC_ERROR_PROD");
+    Map<String, Integer> reported = policy.snapshotDropCounts();
+    policy.recordDrop("SYNC_ERROR_PROD");
+    policy.clearDropCounts(reported);
+
+    assertEquals(Collections.singletonMap("SYNC_ERROR_PROD", 1), policy.snapshotDropCounts());
+  }
+
+  @Test
+  public void dropCountsSerializeToAJsonObject() throws Exception {
+    JSONObject json = new JSONObject(
+      StallionEventQueuePolicy.dropCountsToJson(Collections.singletonMap("SYNC_ERROR_PROD", 4))
+    );
+
+    assertEquals(1, json.length());
+    assertEquals(4, json.getInt("SYNC_ERROR_PROD"));
+  }
+}
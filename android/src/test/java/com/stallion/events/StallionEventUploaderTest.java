@@ -0,0 +1,147 @@
+package com.stallion.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.stallion.storage.StallionStateManager;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+@RunWith(RobolectricTestRunner.class)
+public class StallionEventUploaderTest {
+  private static final byte[] HEADER = StallionEventCodec.encodeHeader("project", "android", "1.0", "uid");
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private HttpServer server;
+  private volatile int responseCode = 200;
+  private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+  private final CountDownLatch requestReceived = new CountDownLatch(1);
+  private StallionEventLog eventLog;
+  private StallionEventQueuePolicy queuePolicy;
+
+  @Before
+  public void setUp() throws Exception {
+    StallionStateManager.init(RuntimeEnvironment.getApplication());
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/events", exchange -> {
+      String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+      try (InputStream body = "gzip".equals(encoding)
+        ? new GZIPInputStream(exchange.getRequestBody())
+        : exchange.getRequestBody()) {
+        requestBodies.add(readFully(body));
+      }
+      exchange.sendResponseHeaders(responseCode, -1);
+      exchange.close();
+      requestReceived.countDown();
+    });
+    server.start();
+    eventLog = new StallionEventLog(new File(temporaryFolder.getRoot(), "events"), 64 * 1024, HEADER);
+    queuePolicy = new StallionEventQueuePolicy(100, "");
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void uploadedEventsAreAcknowledged() throws Exception {
+    appendEvents(3);
+    queuePolicy.recordDrop("SYNC_ERROR_PROD");
+
+    newUploader().start();
+
+    assertTrue(requestReceived.await(10, TimeUnit.SECONDS));
+    JSONObject body = new JSONObject(requestBodies.get(0));
+    assertEquals("project", body.getString("projectId"));
+    assertEquals("1.0", body.getString("appVersion"));
+    assertEquals(1, body.getJSONObject("droppedEvents").getInt("SYNC_ERROR_PROD"));
+    JSONArray eventData = body.getJSONArray("eventData");
+    assertEquals(3, eventData.length());
+    for (int i = 0; i < 3; i++) {
+      JSONObject event = eventData.getJSONObject(i);
+      assertEquals("event-" + i, event.getString("eventId"));
+      assertEquals("INSTALLED_PROD", event.getString("eventType"));
+      assertFalse(event.has("projectId"));
+    }
+    assertTrue(waitUntilLogIsEmpty());
+  }
+
+  @Test
+  public void failedUploadKeepsTheEvents() throws Exception {
+    responseCode = 500;
+    appendEvents(3);
+
+    newUploader().start();
+
+    assertTrue(requestReceived.await(10, TimeUnit.SECONDS));
+    assertEquals(3, eventLog.size());
+    assertEquals(3, new JSONObject(requestBodies.get(0)).getJSONArray("eventData").length());
+  }
+
+  private StallionEventUploader newUploader() {
+    return new StallionEventUploader(
+      eventLog,
+      "http://127.0.0.1:" + server.getAddress().getPort() + "/events",
+      StallionStateManager.getInstance().getStallionConfig(),
+      queuePolicy
+    );
+  }
+
+  private void appendEvents(int count) throws Exception {
+    StallionEventCodec.Header header = StallionEventCodec.decodeHeader(HEADER);
+    for (int i = 0; i < count; i++) {
+      JSONObject event = new JSONObject();
+      event.put("eventType", "INSTALLED_PROD");
+      event.put("eventTimestamp", System.currentTimeMillis());
+      event.put("projectId", "project");
+      event.put("releaseHash", "0123456789abcdef");
+      eventLog.append("event-" + i, 2, StallionEventCodec.encode(event, header));
+    }
+  }
+
+  // The log is acknowledged after the response is read, so this polls until it is
+  private boolean waitUntilLogIsEmpty() throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (System.currentTimeMillis() < deadline) {
+      if (eventLog.size() == 0) return true;
+      Thread.sleep(20);
+    }
+    return false;
+  }
+
+  private static String readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int bytesRead;
+    while ((bytesRead = in.read(buffer)) != -1) {
+      out.write(buffer, 0, bytesRead);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,98 @@
+package com.stallion.networkmanager;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class StallionBandwidthLimiterTest {
+  private static final long BYTES_PER_SECOND = 1000;
+
+  private volatile long bytesPerSecond = BYTES_PER_SECOND;
+  // Time only moves when a test advances it, and never backwards since the bucket is shared
+  private static volatile long nowMs = 1000000;
+
+  @Before
+  public void setUp() throws Exception {
+    // The first call only starts the clock, then a full second refills the bucket whatever an
+    // earlier test left in it and it is drained
+    acquire(0);
+    nowMs += 10000;
+    acquire((int) BYTES_PER_SECOND);
+  }
+
+  @Test(timeout = 10000)
+  public void unlimitedRateNeverBlocks() throws Exception {
+    bytesPerSecond = 0;
+
+    for (int i = 0; i < 1000; i++) {
+      acquire(1024 * 1024);
+    }
+  }
+
+  @Test
+  public void chunkWaitsUntilTheRateHasRefilledTheBucket() throws Exception {
+    nowMs += 999;
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread download = startDownload(1000, error);
+    awaitWaiting(download);
+
+    nowMs += 1;
+    StallionBandwidthLimiter.onLifecycleChanged();
+    download.join(10000);
+
+    assertFalse(download.isAlive());
+    assertNull(error.get());
+  }
+
+  @Test(timeout = 10000)
+  public void refilledBucketLetsAChunkThroughWithoutWaiting() throws Exception {
+    nowMs += 1000;
+
+    acquire(1000);
+  }
+
+  @Test
+  public void lifecycleChangeReleasesAWaitingChunk() throws Exception {
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread download = startDownload(1000, error);
+    awaitWaiting(download);
+
+    bytesPerSecond = 0;
+    StallionBandwidthLimiter.onLifecycleChanged();
+    download.join(10000);
+
+    assertFalse(download.isAlive());
+    assertNull(error.get());
+  }
+
+  private void acquire(int bytes) throws Exception {
+    StallionBandwidthLimiter.acquire(bytes, () -> bytesPerSecond, () -> nowMs);
+  }
+
+  private Thread startDownload(int bytes, AtomicReference<Throwable> error) {
+    Thread download = new Thread(() -> {
+      try {
+        acquire(bytes);
+      } catch (Throwable e) {
+        error.set(e);
+      }
+    });
+    download.start();
+    return download;
+  }
+
+  // Returns once the thread is parked in the limiter, fails if it went through instead
+  private static void awaitWaiting(Thread thread) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+      assertTrue("Chunk was not held back", thread.isAlive() && System.nanoTime() < deadline);
+      Thread.yield();
+    }
+  }
+}
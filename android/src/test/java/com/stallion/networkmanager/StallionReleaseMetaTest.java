@@ -0,0 +1,132 @@
+package com.stallion.networkmanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+@RunWith(RobolectricTestRunner.class)
+public class StallionReleaseMetaTest {
+  private static final String FLAT_RESPONSE = "{\"updateAvailable\":true,\"releaseHash\":\"abc123\","
+    + "\"downloadUrl\":\"https://cdn.example.com/bundle.zip\",\"targetAppVersion\":\"1.2.0\","
+    + "\"bundleSize\":1048576,\"urgent\":true,\"nextCheckAfterSeconds\":600,\"unknown\":{\"a\":[1,2,3]}}";
+
+  @Test
+  public void parsesTheFlatFormat() throws Exception {
+    StallionReleaseMeta releaseMeta = StallionReleaseMeta.parse(FLAT_RESPONSE);
+
+    assertTrue(releaseMeta.hasNewBundleData);
+    assertFalse(releaseMeta.hasAppliedBundleData);
+    assertEquals("abc123", releaseMeta.newReleaseHash);
+    assertEquals("https://cdn.example.com/bundle.zip", releaseMeta.newReleaseUrl);
+    assertEquals("1.2.0", releaseMeta.newTargetAppVersion);
+    assertEquals(1048576, releaseMeta.newBundleSize);
+    assertTrue(releaseMeta.isUrgent);
+    assertEquals(600, releaseMeta.nextCheckAfterSeconds);
+  }
+
+  @Test
+  public void parsesTheWrappedFormat() throws Exception {
+    StallionReleaseMeta releaseMeta = StallionReleaseMeta.parse(wrappedResponse(0));
+
+    assertTrue(releaseMeta.hasAppliedBundleData);
+    assertTrue(releaseMeta.isRolledBack);
+    assertEquals("1.1.0", releaseMeta.appliedTargetAppVersion);
+    assertTrue(releaseMeta.hasNewBundleData);
+    assertEquals("def456", releaseMeta.newReleaseHash);
+    assertEquals("https://cdn.example.com/new.zip", releaseMeta.newReleaseUrl);
+    assertEquals(2048, releaseMeta.newBundleSize);
+    assertFalse(releaseMeta.isUrgent);
+  }
+
+  @Test
+  public void unsuccessfulResponseCarriesNoBundles() throws Exception {
+    StallionReleaseMeta releaseMeta = StallionReleaseMeta.parse(
+      "{\"success\":false,\"data\":{\"newBundleData\":{\"checksum\":\"def456\"}}}"
+    );
+
+    assertFalse(releaseMeta.hasNewBundleData);
+    assertFalse(releaseMeta.hasAppliedBundleData);
+  }
+
+  @Test
+  public void wrongTypesFallBackToDefaults() throws Exception {
+    StallionReleaseMeta releaseMeta = StallionReleaseMeta.parse(
+      "{\"updateAvailable\":\"true\",\"releaseHash\":null,\"bundleSize\":\"12\",\"urgent\":1}"
+    );
+
+    assertTrue(releaseMeta.hasNewBundleData);
+    assertEquals("", releaseMeta.newReleaseHash);
+    assertEquals(12, releaseMeta.newBundleSize);
+    assertFalse(releaseMeta.isUrgent);
+  }
+
+  // Latency under Robolectric says little about a device, allocations per parse carry over
+  @Test
+  public void parseAllocatesLessThanTheJsonObjectTree() throws Exception {
+    com.sun.management.ThreadMXBean threads = allocationCounter();
+    long threadId = Thread.currentThread().getId();
+    String body = wrappedResponse(200);
+    int iterations = 500;
+    for (int i = 0; i < 100; i++) {
+      StallionReleaseMeta.parse(body);
+      parseWithJsonObject(body);
+    }
+
+    StallionReleaseMeta releaseMeta = null;
+    long streamingStartedAt = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      releaseMeta = StallionReleaseMeta.parse(body);
+    }
+    long streamingBytes = threads.getThreadAllocatedBytes(threadId) - streamingStartedAt;
+
+    String treeHash = null;
+    long treeStartedAt = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      treeHash = parseWithJsonObject(body);
+    }
+    long treeBytes = threads.getThreadAllocatedBytes(threadId) - treeStartedAt;
+
+    assertEquals(treeHash, releaseMeta.newReleaseHash);
+    assertTrue("Streaming allocated " + streamingBytes + " bytes, JSONObject " + treeBytes,
+      streamingBytes * 2 < treeBytes);
+  }
+
+  private static String parseWithJsonObject(String body) throws Exception {
+    JSONObject response = new JSONObject(body);
+    JSONObject data = response.optJSONObject("data");
+    JSONObject newBundleData = data != null ? data.optJSONObject("newBundleData") : null;
+    return newBundleData != null ? newBundleData.optString("checksum") : "";
+  }
+
+  private static com.sun.management.ThreadMXBean allocationCounter() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+    assumeTrue(counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled());
+    return counter;
+  }
+
+  // paddingFields adds unrelated fields the parser has to skip, as real responses carry
+  private static String wrappedResponse(int paddingFields) {
+    StringBuilder padding = new StringBuilder();
+    for (int i = 0; i < paddingFields; i++) {
+      padding.append(",\"extra").append(i).append("\":{\"note\":\"unused field ").append(i)
+        .append("\",\"values\":[1,2,3,4]}");
+    }
+    return "{\"success\":true,\"data\":{"
+      + "\"appliedBundleData\":{\"isRolledBack\":true,\"targetAppVersion\":\"1.1.0\"},"
+      + "\"newBundleData\":{\"downloadUrl\":\"https://cdn.example.com/new.zip\",\"checksum\":\"def456\","
+      + "\"targetAppVersion\":\"1.2.0\",\"bundleSize\":2048,\"urgent\":false}"
+      + padding
+      + "}}";
+  }
+}
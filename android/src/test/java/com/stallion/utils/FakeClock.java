@@ -0,0 +1,26 @@
+package com.stallion.utils;
+
+// Installed as the StallionClock source, time only moves when a test advances it
+class FakeClock implements StallionClock.Source {
+  // Starts far from zero so nothing mistakes it for an unset timestamp
+  private volatile long nowMs = 1000000;
+
+  static FakeClock install() {
+    FakeClock clock = new FakeClock();
+    StallionClock.setSource(clock);
+    return clock;
+  }
+
+  static void uninstall() {
+    StallionClock.setSource(null);
+  }
+
+  @Override
+  public long elapsedMs() {
+    return nowMs;
+  }
+
+  void advance(long ms) {
+    nowMs += ms;
+  }
+}
@@ -0,0 +1,78 @@
+package com.stallion.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class StallionBytecodeCheckTest {
+  private static final byte[] HBC_MAGIC = {
+    (byte) 0xC6, 0x1F, (byte) 0xBC, 0x03, (byte) 0xC1, 0x03, 0x19, 0x1F
+  };
+
+  @Test
+  public void readsTheVersionFromABytecodeHeader() throws Exception {
+    assertEquals(96, StallionBytecodeCheck.readBytecodeVersion(bytecode(96)));
+    assertEquals(0x01020304, StallionBytecodeCheck.readBytecodeVersion(bytecode(0x01020304)));
+  }
+
+  @Test
+  public void plainJavaScriptIsNotBytecode() throws Exception {
+    InputStream bundle = new ByteArrayInputStream(
+      "var __BUNDLE_START_TIME__=this.nativePerformanceNow".getBytes(StandardCharsets.UTF_8)
+    );
+
+    assertEquals(StallionBytecodeCheck.NOT_BYTECODE, StallionBytecodeCheck.readBytecodeVersion(bundle));
+  }
+
+  @Test
+  public void truncatedHeaderIsNotBytecode() throws Exception {
+    InputStream bundle = new ByteArrayInputStream(HBC_MAGIC);
+
+    assertEquals(StallionBytecodeCheck.NOT_BYTECODE, StallionBytecodeCheck.readBytecodeVersion(bundle));
+  }
+
+  @Test
+  public void headerSplitAcrossReadsIsReassembled() throws Exception {
+    // Returns one byte per read, as a slow stream may
+    InputStream bundle = new ByteArrayInputStream(header(96)) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 1));
+      }
+    };
+
+    assertEquals(96, StallionBytecodeCheck.readBytecodeVersion(bundle));
+  }
+
+  @Test
+  public void onlyMatchingBytecodeIsCompatible() {
+    assertTrue(StallionBytecodeCheck.isCompatible(96, 96));
+    assertFalse(StallionBytecodeCheck.isCompatible(94, 96));
+    assertTrue(StallionBytecodeCheck.isCompatible(StallionBytecodeCheck.NOT_BYTECODE, 96));
+    assertTrue(StallionBytecodeCheck.isCompatible(94, StallionBytecodeCheck.UNKNOWN));
+    assertFalse(StallionBytecodeCheck.isCompatible(94, StallionBytecodeCheck.NOT_BYTECODE));
+  }
+
+  private static InputStream bytecode(int version) {
+    byte[] header = header(version);
+    byte[] bundle = new byte[header.length + 64];
+    System.arraycopy(header, 0, bundle, 0, header.length);
+    return new ByteArrayInputStream(bundle);
+  }
+
+  private static byte[] header(int version) {
+    byte[] header = new byte[12];
+    System.arraycopy(HBC_MAGIC, 0, header, 0, HBC_MAGIC.length);
+    header[8] = (byte) version;
+    header[9] = (byte) (version >> 8);
+    header[10] = (byte) (version >> 16);
+    header[11] = (byte) (version >> 24);
+    return header;
+  }
+}
@@ -0,0 +1,218 @@
+package com.stallion.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class StallionFutureTest {
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private FakeClock clock;
+
+  @Before
+  public void setUp() {
+    clock = FakeClock.install();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    FakeClock.uninstall();
+  }
+
+  @Test
+  public void completionNotifiesListenersOnce() {
+    StallionFuture<String> future = new StallionFuture<>();
+    AtomicInteger calls = new AtomicInteger();
+    AtomicReference<String> result = new AtomicReference<>();
+    future.whenComplete((value, error) -> {
+      calls.incrementAndGet();
+      result.set(value);
+    });
+
+    assertTrue(future.complete("done"));
+    assertFalse(future.complete("again"));
+    assertFalse(future.fail(new RuntimeException()));
+
+    assertEquals(1, calls.get());
+    assertEquals("done", result.get());
+  }
+
+  @Test
+  public void listenerAddedAfterFailureSeesTheError() {
+    RuntimeException failure = new RuntimeException("failed");
+    StallionFuture<String> future = StallionFuture.failed(failure);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+
+    future.whenComplete((value, e) -> error.set(e));
+
+    assertEquals(failure, error.get());
+    assertFalse(future.isCancelled());
+  }
+
+  @Test
+  public void cancelRunsHooksAndReportsCancellation() {
+    StallionFuture<String> future = new StallionFuture<>();
+    AtomicBoolean hookRan = new AtomicBoolean();
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    future.onCancel(() -> hookRan.set(true));
+    future.whenComplete((value, e) -> error.set(e));
+
+    assertTrue(future.cancel());
+
+    assertTrue(hookRan.get());
+    assertTrue(future.isCancelled());
+    assertTrue(error.get() instanceof CancellationException);
+  }
+
+  @Test
+  public void failingWithCancellationCancels() {
+    StallionFuture<String> future = new StallionFuture<>();
+
+    future.fail(new CancellationException());
+
+    assertTrue(future.isCancelled());
+  }
+
+  @Test
+  public void cancellingAChainCancelsTheStepStillRunning() {
+    StallionFuture<String> first = new StallionFuture<>();
+    StallionFuture<String> second = new StallionFuture<>();
+    StallionFuture<String> chain = first.thenCompose(value -> second);
+
+    first.complete("first");
+    chain.cancel();
+
+    assertTrue(second.isCancelled());
+    assertFalse(first.isCancelled());
+  }
+
+  @Test
+  public void cancellingAChainBeforeItsFirstStepEndsCancelsThatStep() {
+    StallionFuture<String> first = new StallionFuture<>();
+    AtomicBoolean stepRan = new AtomicBoolean();
+    StallionFuture<String> chain = first.thenCompose(value -> {
+      stepRan.set(true);
+      return StallionFuture.completed(value);
+    });
+
+    chain.cancel();
+
+    assertTrue(first.isCancelled());
+    assertFalse(stepRan.get());
+  }
+
+  @Test
+  public void failureSkipsTheRestOfTheChain() throws Exception {
+    AtomicBoolean stepRan = new AtomicBoolean();
+    StallionFuture<String> chain = StallionFuture.<String>failed(new IllegalStateException())
+      .thenCompose(value -> {
+        stepRan.set(true);
+        return StallionFuture.completed(value);
+      });
+
+    assertTrue(await(chain).error instanceof IllegalStateException);
+    assertFalse(stepRan.get());
+  }
+
+  @Test
+  public void timeoutStartsWhenTheTaskRuns() throws Exception {
+    CountDownLatch releaseBlocker = new CountDownLatch(1);
+    CountDownLatch queuedStarted = new CountDownLatch(1);
+    CountDownLatch finishQueued = new CountDownLatch(1);
+    StallionFuture.submit(executor, future -> releaseBlocker.await(10, TimeUnit.SECONDS));
+    StallionFuture<String> queued = StallionFuture.submit(executor, 20, "queued", future -> {
+      queuedStarted.countDown();
+      finishQueued.await(10, TimeUnit.SECONDS);
+      return "done";
+    });
+
+    // Far past the timeout, but all of it spent waiting behind the blocker
+    clock.advance(60000);
+    releaseBlocker.countDown();
+    assertTrue(queuedStarted.await(10, TimeUnit.SECONDS));
+    finishQueued.countDown();
+
+    Outcome<String> outcome = await(queued);
+    assertNull(outcome.error);
+    assertEquals("done", outcome.value);
+  }
+
+  @Test
+  public void timeoutFailsTheFutureAndCancelsTheTask() throws Exception {
+    CountDownLatch taskStarted = new CountDownLatch(1);
+    CountDownLatch taskCancelled = new CountDownLatch(1);
+    StallionFuture<String> timed = StallionFuture.submit(executor, 20, "slow", future -> {
+      future.onCancel(taskCancelled::countDown);
+      taskStarted.countDown();
+      taskCancelled.await(10, TimeUnit.SECONDS);
+      return "late";
+    });
+    assertTrue(taskStarted.await(10, TimeUnit.SECONDS));
+
+    clock.advance(21);
+
+    Outcome<String> outcome = await(timed);
+    assertTrue(outcome.error instanceof TimeoutException);
+    assertTrue(outcome.error.getMessage().startsWith("slow timed out"));
+    assertTrue(taskCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void cancellingTheTimedFutureCancelsTheTask() throws Exception {
+    CountDownLatch taskStarted = new CountDownLatch(1);
+    CountDownLatch taskCancelled = new CountDownLatch(1);
+    StallionFuture<String> timed = StallionFuture.submit(executor, 60000, "stage", future -> {
+      future.onCancel(taskCancelled::countDown);
+      taskStarted.countDown();
+      taskCancelled.await(10, TimeUnit.SECONDS);
+      return null;
+    });
+    assertTrue(taskStarted.await(10, TimeUnit.SECONDS));
+
+    timed.cancel();
+
+    assertTrue(taskCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void rejectedSubmissionFails() {
+    executor.shutdown();
+
+    StallionFuture<String> future = StallionFuture.submit(executor, f -> "never");
+
+    assertTrue(future.isDone());
+    assertFalse(future.isCancelled());
+  }
+
+  private static <T> Outcome<T> await(StallionFuture<T> future) throws InterruptedException {
+    Outcome<T> outcome = new Outcome<>();
+    CountDownLatch done = new CountDownLatch(1);
+    future.whenComplete((value, error) -> {
+      outcome.value = value;
+      outcome.error = error;
+      done.countDown();
+    });
+    assertTrue("Future did not complete", done.await(10, TimeUnit.SECONDS));
+    return outcome;
+  }
+
+  private static class Outcome<T> {
+    volatile T value;
+    volatile Throwable error;
+  }
+}
@@ -0,0 +1,116 @@
+package com.stallion.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.stallion.storage.StallionStateManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(RobolectricTestRunner.class)
+public class StallionIoThrottleTest {
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private FakeClock clock;
+
+  @Before
+  public void setUp() {
+    StallionStateManager.init(RuntimeEnvironment.getApplication());
+    clock = FakeClock.install();
+  }
+
+  @After
+  public void tearDown() {
+    StallionIoThrottle.resume();
+    executor.shutdownNow();
+    FakeClock.uninstall();
+  }
+
+  @Test
+  public void pausedTimeDoesNotCountTowardsTheTimeout() throws Exception {
+    AtomicReference<Thread> worker = new AtomicReference<>();
+    CountDownLatch started = new CountDownLatch(1);
+    StallionIoThrottle.pause(StallionIoThrottle.MAX_PAUSE_MS);
+    StallionFuture<String> install = StallionFuture.submit(executor, 20, "install", future -> {
+      worker.set(Thread.currentThread());
+      started.countDown();
+      StallionIoThrottle.acquire(1024);
+      return "installed";
+    });
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    awaitWaiting(worker.get());
+
+    // Far past the timeout, but all of it spent paused
+    clock.advance(StallionIoThrottle.MAX_PAUSE_MS / 2);
+    StallionIoThrottle.resume();
+
+    CountDownLatch done = new CountDownLatch(1);
+    AtomicReference<String> result = new AtomicReference<>();
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    install.whenComplete((value, e) -> {
+      result.set(value);
+      error.set(e);
+      done.countDown();
+    });
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertNull(error.get());
+    assertEquals("installed", result.get());
+  }
+
+  @Test
+  public void heldBackTimeIsTrackedPerThread() throws Exception {
+    StallionIoThrottle.pause(StallionIoThrottle.MAX_PAUSE_MS);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread worker = new Thread(() -> {
+      try {
+        StallionIoThrottle.acquire(1024);
+      } catch (Exception e) {
+        error.set(e);
+      }
+    });
+    worker.start();
+    awaitWaiting(worker);
+
+    clock.advance(300);
+    // A wait still in progress is included
+    assertEquals(300, StallionIoThrottle.getThrottledMs(worker));
+    StallionIoThrottle.resume();
+    worker.join(10000);
+
+    assertNull(error.get());
+    assertEquals(300, StallionIoThrottle.getThrottledMs(worker));
+  }
+
+  @Test
+  public void unthrottledChunksAreNotCountedAsHeldBack() throws Exception {
+    Thread worker = new Thread(() -> {
+      try {
+        StallionIoThrottle.acquire(1024);
+      } catch (Exception ignored) {}
+    });
+    worker.start();
+    worker.join(10000);
+
+    assertEquals(0, StallionIoThrottle.getThrottledMs(worker));
+  }
+
+  // Returns once the thread is parked in the throttle
+  private static void awaitWaiting(Thread thread) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+      assertTrue("Thread never waited", System.nanoTime() < deadline);
+      Thread.yield();
+    }
+  }
+}
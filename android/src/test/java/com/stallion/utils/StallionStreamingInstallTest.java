@@ -0,0 +1,129 @@
+package com.stallion.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.stallion.storage.StallionStateManager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CancellationException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@RunWith(RobolectricTestRunner.class)
+public class StallionStreamingInstallTest {
+  private static final int LARGE_ENTRY_BYTES = 4 * 1024 * 1024;
+  private static final int SMALL_ENTRY_COUNT = 500;
+  private static final int SMALL_ENTRY_BYTES = 1024;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File zip;
+
+  @Before
+  public void setUp() throws IOException {
+    StallionStateManager.init(RuntimeEnvironment.getApplication());
+    zip = temporaryFolder.newFile("bundle.zip");
+    writeBundle(zip);
+  }
+
+  @Test
+  public void streamingExtractionWritesEveryEntry() throws Exception {
+    File destination = extractStreaming("extracted", Long.MAX_VALUE, new StallionFuture<Void>());
+
+    assertEquals(LARGE_ENTRY_BYTES, new File(destination, "index.android.bundle").length());
+    for (int i = 0; i < SMALL_ENTRY_COUNT; i++) {
+      assertEquals(SMALL_ENTRY_BYTES, new File(destination, "assets/" + i + ".png").length());
+    }
+  }
+
+  // Allocations on the extracting thread are what a large install adds to the app's heap
+  @Test
+  public void streamingExtractionAllocatesLessThanTheZipFilePath() throws Exception {
+    com.sun.management.ThreadMXBean threads = allocationCounter();
+    long threadId = Thread.currentThread().getId();
+    // Both paths are run once first so class loading is not counted against either
+    extractStreaming("warmup-streaming", Long.MAX_VALUE, new StallionFuture<Void>());
+    extractWithZipFile("warmup-zipfile");
+
+    long streamingStartedAt = threads.getThreadAllocatedBytes(threadId);
+    extractStreaming("streaming", Long.MAX_VALUE, new StallionFuture<Void>());
+    long streamingBytes = threads.getThreadAllocatedBytes(threadId) - streamingStartedAt;
+
+    long zipFileStartedAt = threads.getThreadAllocatedBytes(threadId);
+    extractWithZipFile("zipfile");
+    long zipFileBytes = threads.getThreadAllocatedBytes(threadId) - zipFileStartedAt;
+
+    assertTrue("Streaming allocated " + streamingBytes + " bytes, ZipFile " + zipFileBytes,
+      streamingBytes < zipFileBytes);
+    // Independent of entry size, the large entry goes through the one fixed buffer
+    assertTrue("Streaming allocated " + streamingBytes + " bytes", streamingBytes < LARGE_ENTRY_BYTES / 4);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void extractionStopsOnceItRunsOutOfSpace() throws Exception {
+    extractStreaming("extracted", LARGE_ENTRY_BYTES, new StallionFuture<Void>());
+  }
+
+  @Test(expected = CancellationException.class)
+  public void cancelledExtractionStops() throws Exception {
+    StallionFuture<Void> job = new StallionFuture<>();
+    job.cancel();
+
+    extractStreaming("extracted", Long.MAX_VALUE, job);
+  }
+
+  private File extractStreaming(String folder, long maxBytes, StallionFuture<?> job) throws IOException {
+    File destination = temporaryFolder.newFolder(folder);
+    StallionFileManager.unzipFileStreaming(zip.getAbsolutePath(), destination.getAbsolutePath(), maxBytes, job);
+    return destination;
+  }
+
+  private void extractWithZipFile(String folder) throws IOException {
+    File destination = temporaryFolder.newFolder(folder);
+    StallionFileManager.unzipFile(zip.getAbsolutePath(), destination.getAbsolutePath(), new StallionFuture<Void>());
+  }
+
+  private static com.sun.management.ThreadMXBean allocationCounter() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+    assumeTrue(counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled());
+    return counter;
+  }
+
+  // The large entry is compressible so the archive itself stays small on disk
+  private static void writeBundle(File zip) throws IOException {
+    byte[] chunk = new byte[64 * 1024];
+    for (int i = 0; i < chunk.length; i++) {
+      chunk[i] = (byte) (i % 251);
+    }
+    try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zip)))) {
+      out.putNextEntry(new ZipEntry("index.android.bundle"));
+      for (int written = 0; written < LARGE_ENTRY_BYTES; written += chunk.length) {
+        out.write(chunk);
+      }
+      out.closeEntry();
+      for (int i = 0; i < SMALL_ENTRY_COUNT; i++) {
+        out.putNextEntry(new ZipEntry("assets/" + i + ".png"));
+        out.write(chunk, i % 1024, SMALL_ENTRY_BYTES);
+        out.closeEntry();
+      }
+    }
+  }
+}
@@ -128,12 +128,14 @@ export enum NativeEventTypesProd {
   STABILIZED_PROD = 'STABILIZED_PROD',
   EXCEPTION_PROD = 'EXCEPTION_PROD',
   AUTO_ROLLED_BACK_PROD = 'AUTO_ROLLED_BACK_PROD',
+  BYTECODE_INCOMPATIBLE_PROD = 'BYTECODE_INCOMPATIBLE_PROD',
 }
 export enum NativeEventTypesStage {
   DOWNLOAD_ERROR_STAGE = 'DOWNLOAD_ERROR_STAGE',
   DOWNLOAD_PROGRESS_STAGE = 'DOWNLOAD_PROGRESS_STAGE',
   DOWNLOAD_COMPLETE_STAGE = 'DOWNLOAD_COMPLETE_STAGE',
   INSTALLED_STAGE = 'INSTALLED_STAGE',
+  BYTECODE_INCOMPATIBLE_STAGE = 'BYTECODE_INCOMPATIBLE_STAGE',
 }
 
 export const STALLION_NATIVE_EVENT = 'STALLION_NATIVE_EVENT';
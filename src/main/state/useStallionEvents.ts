@@ -35,16 +35,24 @@ export interface IStallionNativeEventData {
   eventTimestamp: number;
   releasehash?: string;
   error?: string;
-  progress?: string;
+  // progress, totalBytes and etaMs are null while the download size is unknown
+  progress?: string | number | null;
+  receivedBytes?: number;
+  totalBytes?: number | null;
+  bytesPerSecond?: number;
+  averageBytesPerSecond?: number;
+  etaMs?: number | null;
 }
 
 const STALLION_EVENT_DEBOUNCE_INTERVAL = 3000; // 3s
 
+// Progress events arrive as objects, everything else as JSON strings
 const processStallionEvent = (
-  eventString: string
+  nativeEvent: string | IStallionNativeEventData
 ): null | IStallionNativeEventData => {
+  if (typeof nativeEvent === 'object') return nativeEvent;
   try {
-    return JSON.parse(eventString) as IStallionNativeEventData;
+    return JSON.parse(nativeEvent) as IStallionNativeEventData;
   } catch (_) {
     return null;
   }
@@ -98,8 +106,8 @@ export const useStallionEvents = (
     const eventEmitter = new NativeEventEmitter(StallionNativeModule);
     eventEmitter.addListener(
       STALLION_NATIVE_EVENT,
-      (nativeEventString: string) => {
-        const eventData = processStallionEvent(nativeEventString);
+      (nativeEvent: string | IStallionNativeEventData) => {
+        const eventData = processStallionEvent(nativeEvent);
         if (!eventData) return;
 
         const eventType = eventData?.type as string;
@@ -109,6 +117,7 @@ export const useStallionEvents = (
         }
         switch (eventType) {
           case NativeEventTypesProd.DOWNLOAD_STARTED_PROD:
+          case NativeEventTypesProd.DOWNLOAD_PROGRESS_PROD:
           case NativeEventTypesProd.DOWNLOAD_COMPLETE_PROD:
           case NativeEventTypesProd.DOWNLOAD_ERROR_PROD:
           case NativeEventTypesProd.INSTALLED_PROD:
@@ -117,12 +126,13 @@ export const useStallionEvents = (
           case NativeEventTypesProd.STABILIZED_PROD:
           case NativeEventTypesProd.EXCEPTION_PROD:
           case NativeEventTypesProd.AUTO_ROLLED_BACK_PROD:
+          case NativeEventTypesProd.BYTECODE_INCOMPATIBLE_PROD:
             stallionEventEmitter.emit(eventData);
             break;
           case NativeEventTypesStage.DOWNLOAD_PROGRESS_STAGE:
             try {
               const progress = Number(eventData?.progress);
-              if (progress) {
+              if (eventData?.progress != null && progress >= 0) {
                 setProgress(progress);
               }
             } catch (_) {}
@@ -55,6 +55,7 @@ export const onLaunchNative: TOnLaunchBundleNative =
 
 export const sync: () => void = StallionNativeModule?.sync;
 
+// Resolves to "[]" when native event upload is enabled, the native uploader delivers the events then
 export const popEventsNative: () => Promise<string> =
   StallionNativeModule?.popEvents;
 